@@ -0,0 +1,58 @@
+package com.example.demo.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.demo.thread.ChunkedFileCopier;
+import com.example.demo.thread.CopyContextPool;
+import com.example.demo.thread.CopyWorkerPool;
+import com.example.demo.thread.DirectoryScanner;
+
+@Configuration
+public class CopyExecutorConfig {
+
+	/**
+	 * Shared worker pool that runs the copy stage of every run on this node.
+	 * {@code filecopy.copy.mode} selects platform threads or virtual threads.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public CopyWorkerPool copyWorkerPool(FileCopyProperties properties) {
+		FileCopyProperties.Copy copy = properties.getCopy();
+		if (CopyWorkerPool.MODE_VIRTUAL.equalsIgnoreCase(copy.getMode())) {
+			return CopyWorkerPool.virtual(copy.getMaxInFlight(), copy.getWorkerThreads());
+		}
+		return CopyWorkerPool.platform(copy.getWorkerThreads());
+	}
+
+	/**
+	 * Work-stealing pool that lists the source trees of every run on this node,
+	 * sized by {@code filecopy.scan.parallelism} independently of the copy workers.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public DirectoryScanner directoryScanner(FileCopyProperties properties) {
+		return new DirectoryScanner(properties.getScan().getParallelism());
+	}
+
+	/**
+	 * Reusable copy buffers, digests, ciphers and deflaters. At most
+	 * {@code worker-threads} idle contexts are kept in either mode; a virtual-mode
+	 * burst above that creates extra contexts that are dropped when released, so
+	 * the heap they hold does not outlive the burst.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public CopyContextPool copyContextPool(FileCopyProperties properties) {
+		FileCopyProperties.Copy copy = properties.getCopy();
+		return new CopyContextPool(copy.getBufferSizeKb() * 1024, copy.getWorkerThreads());
+	}
+
+	/**
+	 * Range-parallel copier for very large files, with its own chunk threads so a
+	 * file worker waiting on its chunks never blocks the chunks themselves.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public ChunkedFileCopier chunkedFileCopier(FileCopyProperties properties) {
+		FileCopyProperties.Chunk chunk = properties.getChunk();
+		return new ChunkedFileCopier(chunk.getThresholdMb() * 1024 * 1024, chunk.getChunkSizeMb() * 1024 * 1024,
+				chunk.getParallelism());
+	}
+}
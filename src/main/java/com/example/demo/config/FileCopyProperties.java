@@ -0,0 +1,107 @@
+package com.example.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Tuning settings for the copy engine, bound from the {@code filecopy.*}
+ * entries in application.properties.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "filecopy")
+public class FileCopyProperties {
+
+	private Copy copy = new Copy();
+	private Scan scan = new Scan();
+	private Filter filter = new Filter();
+	private Transform transform = new Transform();
+	private Persist persist = new Persist();
+	private Runs runs = new Runs();
+	private Chunk chunk = new Chunk();
+	private Metadata metadata = new Metadata();
+	private Stream stream = new Stream();
+
+	@Data
+	public static class Copy {
+		// "platform" (bounded thread pool) or "virtual" (one virtual thread per file)
+		private String mode = "platform";
+		// Number of files copied at the same time
+		private int workerThreads = Runtime.getRuntime().availableProcessors();
+		// Accepted files of one run waiting for a copy worker; the run's filter stage waits once it is full
+		private int queueCapacity = 1000;
+		// Virtual mode only: files whose I/O may be in progress at the same time
+		private int maxInFlight = 10000;
+		// Copy buffer per worker, reused across files (256 KB - 1 MB recommended)
+		private int bufferSizeKb = 256;
+	}
+
+	@Data
+	public static class Scan {
+		// Directories listed at the same time across all runs on this node, independent of copy workers
+		private int parallelism = 4;
+	}
+
+	@Data
+	public static class Filter {
+		// Threads per run that apply the filters to listed files and hand the accepted ones to the copy workers
+		private int threads = 2;
+		// Listed files waiting to be filtered; the scan waits once it is full
+		private int queueCapacity = 1000;
+	}
+
+	@Data
+	public static class Transform {
+		// Threads per run that compress and/or encrypt files; the work is CPU-bound
+		private int threads = Runtime.getRuntime().availableProcessors();
+		// Accepted files waiting to be transformed; the run's filter stage waits once it is full
+		private int queueCapacity = 1000;
+	}
+
+	@Data
+	public static class Persist {
+		// Threads per run that replace duplicate rows, queue metadata rows and purge copied sources
+		private int threads = 2;
+		// Copied files waiting to be persisted; the copy and transform stages wait once it is full
+		private int queueCapacity = 1000;
+	}
+
+	@Data
+	public static class Runs {
+		// Runs executed at the same time; further submissions wait in SUBMITTED state
+		private int maxConcurrent = 4;
+		// Finished runs kept for GET /api/runs/{runId}
+		private int retainedFinished = 500;
+		// Submitted previews: matching files kept per run for GET /api/runs/{runId}
+		private int previewResultLimit = 10000;
+		// Run ids reserved from run_id_sequence per database round-trip
+		private int idBlockSize = 100;
+	}
+
+	@Data
+	public static class Chunk {
+		// Untransformed files at least this large are copied as parallel byte ranges (0 disables)
+		private long thresholdMb = 1024;
+		private long chunkSizeMb = 64;
+		// Ranges copied at the same time across all large files on this node
+		private int parallelism = 4;
+	}
+
+	@Data
+	public static class Metadata {
+		// file_meta_data rows inserted per JDBC batch
+		private int batchSize = 500;
+		// Buffered rows are written at least this often while files keep completing
+		private long flushIntervalMs = 2000;
+		// Rows waiting for the writer; copy workers block once it is full
+		private int queueCapacity = 10000;
+	}
+
+	@Data
+	public static class Stream {
+		// NDJSON lines waiting for a streaming client; further lines are dropped and counted, the run never waits
+		private int queueCapacity = 10000;
+	}
+}
@@ -1,22 +1,34 @@
 package com.example.demo.controller;
 
+import com.example.demo.config.FileCopyProperties;
 import com.example.demo.dto.CopyRequest;
 import com.example.demo.dto.FileFilters;
 import com.example.demo.dto.FolderContentResponse;
 import com.example.demo.dto.FolderDetailsRequest;
+import com.example.demo.dto.RunStatus;
 import com.example.demo.service.EncryptionKeyGenerator;
 import com.example.demo.service.FileCopyService;
 import com.example.demo.service.nextRunIdGenerator;
+import com.example.demo.util.NdjsonLineWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.http.HttpServletRequest;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -24,6 +36,7 @@ import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -31,15 +44,23 @@ import org.springframework.web.bind.annotation.RestController;
 public class FileCopyController {
 
 	private static final Logger Logger = LoggerFactory.getLogger(FileCopyController.class);
+	private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
 	@Autowired
 	private FileCopyService fileCopyService;
 
 	@Autowired
 	private nextRunIdGenerator nextRunIdGenerator;
 
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private FileCopyProperties properties;
+
 	@PostMapping("/copy")
-	public ResponseEntity<Map<String, Object>> copyFiles(@RequestBody CopyRequest request) { // Object reference
-																								// variable
+	public ResponseEntity<Map<String, Object>> copyFiles(@RequestBody CopyRequest request,
+			@RequestParam(value = "async", defaultValue = "false") boolean async) { // Object reference variable
 
 		String srcPath = request.getSourcepath();
 		String destPath = request.getDestinationpath();
@@ -69,6 +90,11 @@ public class FileCopyController {
 			Logger.info("Generated encryption key for run {}: {}", runId, encryptionKey);
 		}
 
+		if (async) {
+			fileCopyService.submitRun(runId, srcPath, destPath, activity, filters, encryptionKey);
+			return submittedResponse(runId, activity);
+		}
+
 		List<Map<String, Object>> fileDetails = fileCopyService.copyFiles(srcPath, destPath, runId, activity, filters,
 				encryptionKey);
 
@@ -76,13 +102,7 @@ public class FileCopyController {
 		response.put("runId", runId);
 		response.put("activity", activity);
 
-		String message = "Files operation completed successfully.";
-		if ("copyandpurge".equalsIgnoreCase(activity)) {
-			message = "Files copied successfully. Source files will be purged after successful copy.";
-		} else if ("copy".equalsIgnoreCase(activity)) {
-			message = "Files copied successfully.";
-		}
-		response.put("message", message);
+		response.put("message", copyMessage(activity));
 		if ("copyandpurge".equalsIgnoreCase(activity)) {
 			response.put("data", fileDetails);
 		}
@@ -92,7 +112,8 @@ public class FileCopyController {
 
 	@PostMapping("/preview")
 //	@GetMapping("/preview")
-	public ResponseEntity<Map<String, Object>> previewFiles(@RequestBody CopyRequest request) {
+	public ResponseEntity<Map<String, Object>> previewFiles(@RequestBody CopyRequest request,
+			@RequestParam(value = "async", defaultValue = "false") boolean async) {
 		String sourcePath = request.getSourcepath();
 		FileFilters filters = request.getFilters();
 
@@ -100,15 +121,118 @@ public class FileCopyController {
 			return ResponseEntity.badRequest().body(null);
 		}
 
+		if (async) {
+			// Preview results are not persisted; GET /api/runs/{runId} returns them
+			// (up to filecopy.runs.preview-result-limit) once the run has completed
+			BigDecimal runId = nextRunIdGenerator.generateNextRunId();
+			fileCopyService.submitRun(runId, sourcePath, null, "preview", filters, null);
+			return submittedResponse(runId, "preview");
+		}
+
 		List<Map<String, Object>> fileDetails = fileCopyService.previewFiles(sourcePath, filters);
 		Map<String, Object> response = new HashMap<>();
 		response.put("data", fileDetails);
 		return ResponseEntity.ok(response);
 	}
 
+	/**
+	 * Streaming variant of /preview: every matching file is written as one NDJSON
+	 * line as soon as it is found, so memory use does not grow with the tree.
+	 */
+	@PostMapping("/preview/stream")
+	public ResponseEntity<?> previewFilesStream(@RequestBody CopyRequest request, HttpServletRequest httpRequest) {
+		String sourcePath = request.getSourcepath();
+		FileFilters filters = request.getFilters();
+
+		if (sourcePath == null) {
+			return ResponseEntity.badRequest().body(Map.of("error", "Source path must be provided for preview."));
+		}
+
+		StreamingResponseBody body = outputStream -> {
+			try (NdjsonLineWriter writer = newLineWriter(outputStream)) {
+				fileCopyService.streamFiles(sourcePath, null, null, "preview", filters, null, writer::write);
+				writer.close();
+				if (writer.getDroppedLineCount() > 0) {
+					writer.write(Map.of("linesNotStreamed", writer.getDroppedLineCount()));
+				}
+			}
+		};
+		disableAsyncTimeout(httpRequest);
+		return ResponseEntity.ok().contentType(NDJSON).body(body);
+	}
+
+	/**
+	 * Streaming variant of /copy. For copyandpurge every file's metadata is written
+	 * as one NDJSON line as soon as it is produced (the "data" section of /copy).
+	 * The last line holds the runId, activity, message and summary.
+	 */
+	@PostMapping("/copy/stream")
+	public ResponseEntity<?> copyFilesStream(@RequestBody CopyRequest request, HttpServletRequest httpRequest) {
+		String srcPath = request.getSourcepath();
+		String destPath = request.getDestinationpath();
+		String activity = request.getActivity();
+		FileFilters filters = request.getFilters();
+
+		if (!"copy".equalsIgnoreCase(activity) && !"copyandpurge".equalsIgnoreCase(activity)) {
+			return ResponseEntity.badRequest().body(
+					Map.of("error", "Invalid activity type for /copy endpoint. Expected 'copy' or 'copyandpurge'."));
+		}
+		if (srcPath == null || destPath == null) {
+			return ResponseEntity.badRequest()
+					.body(Map.of("error", "Source and destination must be provided for copy activities."));
+		}
+
+		BigDecimal runId = nextRunIdGenerator.generateNextRunId();
+		String encryptionKey = null;
+		if (filters != null && "y".equalsIgnoreCase(filters.getFileEncryption())) {
+			encryptionKey = EncryptionKeyGenerator.generateKey();
+			Logger.info("Generated encryption key for run {}: {}", runId, encryptionKey);
+		}
+		String runEncryptionKey = encryptionKey;
+
+		StreamingResponseBody body = outputStream -> {
+			try (NdjsonLineWriter writer = newLineWriter(outputStream)) {
+				Consumer<Map<String, Object>> listener = "copyandpurge".equalsIgnoreCase(activity) ? writer::write
+						: fileDetail -> {
+						};
+				Map<String, Object> summary = fileCopyService.streamFiles(srcPath, destPath, runId, activity,
+						filters, runEncryptionKey, listener);
+				writer.close(); // Every queued line goes out before the final one
+
+				Map<String, Object> response = new HashMap<>();
+				response.put("runId", runId);
+				response.put("activity", activity);
+				response.put("message", copyMessage(activity));
+				response.put("summary", summary);
+				if (writer.getDroppedLineCount() > 0) {
+					response.put("linesNotStreamed", writer.getDroppedLineCount());
+				}
+				writer.write(response);
+			}
+		};
+		disableAsyncTimeout(httpRequest);
+		return ResponseEntity.ok().contentType(NDJSON).body(body);
+	}
+
+	private NdjsonLineWriter newLineWriter(OutputStream outputStream) {
+		return new NdjsonLineWriter(outputStream, objectMapper, properties.getStream().getQueueCapacity());
+	}
+
+	/**
+	 * A streamed run may take hours, so these responses have no async timeout.
+	 * Set on this request only; every other async request keeps the default.
+	 */
+	private static void disableAsyncTimeout(HttpServletRequest httpRequest) {
+		AsyncWebRequest asyncWebRequest = WebAsyncUtils.getAsyncManager(httpRequest).getAsyncWebRequest();
+		if (asyncWebRequest != null) {
+			asyncWebRequest.setTimeout(-1L);
+		}
+	}
+
 	@PostMapping("/purge")
 //	public ResponseEntity<Map<String, Object>> purgeOnly(@RequestBody Map<String, String> request) {
-	public ResponseEntity<Map<String, Object>> purgeOnly(@RequestBody CopyRequest request) {
+	public ResponseEntity<Map<String, Object>> purgeOnly(@RequestBody CopyRequest request,
+			@RequestParam(value = "async", defaultValue = "false") boolean async) {
 		// String sourcePath = request.get("sourcePath");
 		String sourcePath = request.getSourcepath();
 		FileFilters filters = request.getFilters();
@@ -117,6 +241,10 @@ public class FileCopyController {
 			Logger.error("sourcePath must provide to PurgeOnly ");
 		}
 		BigDecimal runId = nextRunIdGenerator.generateNextRunId();
+		if (async) {
+			fileCopyService.submitRun(runId, sourcePath, null, "purgeonly", filters, null);
+			return submittedResponse(runId, "purgeonly");
+		}
 		fileCopyService.purgeOnly(sourcePath, runId, filters);
 		Map<String, Object> response = new HashMap<>();
 		response.put("runId", runId);
@@ -124,6 +252,15 @@ public class FileCopyController {
 		return ResponseEntity.ok(response);
 	}
 
+	@GetMapping("/runs/{runId}")
+	public ResponseEntity<RunStatus> getRunStatus(@PathVariable BigDecimal runId) {
+		RunStatus status = fileCopyService.getRunStatus(runId);
+		if (status == null) {
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok(status);
+	}
+
 	@GetMapping("/download")
 	public ResponseEntity<Resource> downloadContent(@RequestParam List<String> targetPath) throws Exception {
 
@@ -164,4 +301,23 @@ public class FileCopyController {
 		return fileCopyService.downloadLogAsZip();
 	}
 
+	private String copyMessage(String activity) {
+		String message = "Files operation completed successfully.";
+		if ("copyandpurge".equalsIgnoreCase(activity)) {
+			message = "Files copied successfully. Source files will be purged after successful copy.";
+		} else if ("copy".equalsIgnoreCase(activity)) {
+			message = "Files copied successfully.";
+		}
+		return message;
+	}
+
+	private ResponseEntity<Map<String, Object>> submittedResponse(BigDecimal runId, String activity) {
+		Map<String, Object> response = new HashMap<>();
+		response.put("runId", runId);
+		response.put("activity", activity);
+		response.put("status", "/api/runs/" + runId);
+		response.put("message", "Run submitted. Poll the status URL for progress.");
+		return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+	}
+
 }
\ No newline at end of file
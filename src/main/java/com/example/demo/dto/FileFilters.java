@@ -51,6 +51,8 @@ public class FileFilters {
 
     private String fileEncryption; // .enc ("y" / "n")
     private String versionEnable; // ("y" / "n")
+    private String deduplicateContent; // ("y" / "n") store each distinct content once under <destination>/.cas
+    private String incrementalSync; // ("y" / "n") skip files unchanged since they were last archived
 
     private String fileValidation; // e.g., "SHA-256", "MD5"
     private String fileCompression; // .gz ("y" / "n")
@@ -0,0 +1,51 @@
+package com.example.demo.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of a run as returned by {@code GET /api/runs/{runId}}.
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RunStatus {
+	private BigDecimal runId;
+	private String activity;
+	private String state; // SUBMITTED, RUNNING, COMPLETED or FAILED
+	private String sourcePath;
+	private String destinationPath;
+	private LocalDateTime submittedAt;
+	private LocalDateTime startedAt;
+	private LocalDateTime finishedAt;
+	private long filesSubmitted;
+	private long filesCompleted;
+	private Map<String, Long> stageQueueDepths; // Items waiting in each pipeline stage while the run is running
+	private Map<String, Object> summary;
+	private List<Map<String, Object>> results; // Submitted previews only: the matching files
+	private String error;
+
+	public RunStatus(RunStatus other) {
+		this.runId = other.runId;
+		this.activity = other.activity;
+		this.state = other.state;
+		this.sourcePath = other.sourcePath;
+		this.destinationPath = other.destinationPath;
+		this.submittedAt = other.submittedAt;
+		this.startedAt = other.startedAt;
+		this.finishedAt = other.finishedAt;
+		this.filesSubmitted = other.filesSubmitted;
+		this.filesCompleted = other.filesCompleted;
+		this.stageQueueDepths = other.stageQueueDepths;
+		this.summary = other.summary;
+		this.results = other.results;
+		this.error = other.error;
+	}
+}
@@ -10,6 +10,6 @@ import lombok.NoArgsConstructor;
 public class FileNameFilterCriteria {
     private String paramName; 
     private String paramValue; 
-    private String criteria1; 
-    private String criteria2;
+    private String criteria1; // "include" or "exclude"
+    private String criteria2; // "startswith", "contains", "endswith" (name without extension), "glob" or "regex" (full name)
 }
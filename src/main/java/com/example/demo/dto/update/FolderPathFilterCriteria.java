@@ -10,5 +10,6 @@ import lombok.NoArgsConstructor;
 public class FolderPathFilterCriteria {
     private String paramName; 
     private String paramValue; 
-    private String criteria1;
+    private String criteria1; // "include" or "exclude"
+    private String criteria2; // "contains" (default), "startswith", "endswith", "glob" or "regex" on the parent folder path
 }
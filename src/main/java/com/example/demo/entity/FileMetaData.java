@@ -1,6 +1,7 @@
 package com.example.demo.entity;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDateTime;
 
 import org.springframework.data.annotation.CreatedDate;
@@ -8,6 +9,7 @@ import org.springframework.data.annotation.CreatedDate;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -15,7 +17,14 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
-@Table
+// Existing string-typed tables are converted by db/file_meta_data_typed_columns.sql
+@Table(name = "file_meta_data", indexes = {
+		// Latest row of a target: downloads of encrypted files, duplicate checks
+		@Index(name = "idx_fmd_target_created", columnList = "target_path, target_file_name, created_at"),
+		// Archived rows of a run: KB archive step
+		@Index(name = "idx_fmd_run_archived", columnList = "run_id, is_archived"),
+		// Rows of a source path: incremental sync
+		@Index(name = "idx_fmd_file_path", columnList = "file_path") })
 @Setter
 @Getter
 @AllArgsConstructor
@@ -25,16 +34,19 @@ public class FileMetaData {
 	@Id
 	private String fileId;
 	@CreatedDate // This annotation instructs Spring to populate this field
-    @Column(name = "created_at", updatable = false) // updatable = false prevents updates after creation
-    private String createdAt;
+    @Column(name = "created_at", updatable = false, columnDefinition = "datetime(6)") // updatable = false prevents updates after creation
+    private LocalDateTime createdAt;
 	private BigDecimal runId;
 	private String fileName;
 	private String filePath;
-	private String creationDate;
+	// File times are stored as UTC in datetime(6) columns
+	@Column(columnDefinition = "datetime(6)")
+	private Instant creationDate;
 	private Long size;
 	private String fileSrcPath;
 	private String targetPath;
-	private String modificationDate;
+	@Column(columnDefinition = "datetime(6)")
+	private Instant modificationDate;
 	private String fileType;
 	private String author;
 	private String sourceChecksum;
@@ -46,5 +58,9 @@ public class FileMetaData {
 	private String fileCompression;
 	private String targetFileName;
 	private String isArchived;
+	// Set when the checksums were combined from per-range digests of this many bytes
+	private Long chunkSize;
+	// Content-store object holding the target's bytes when the run deduplicated content
+	private String contentRef;
 
 }
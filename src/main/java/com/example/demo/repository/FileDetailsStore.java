@@ -6,7 +6,11 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.demo.entity.FileMetaData;
 
@@ -15,6 +19,13 @@ public interface FileDetailsStore extends JpaRepository<FileMetaData, String> {
 
 	List<FileMetaData> findAllByTargetPathAndTargetFileName(String targetPath, String targetFileName);
 
+	// One DELETE statement instead of loading the rows and removing them one entity at a time
+	@Modifying
+	@Transactional
+	@Query("delete from FileMetaData m where m.targetPath = :targetPath and m.targetFileName = :targetFileName")
+	int deleteAllByTargetPathAndTargetFileName(@Param("targetPath") String targetPath,
+			@Param("targetFileName") String targetFileName);
+
 	// Optional<FileMetaData> findByTargetPathAndTargetFileName(String targetPath,
 	// String targetFileName);
 	Optional<FileMetaData> findFirstByTargetPathAndTargetFileNameOrderByCreatedAtDesc(String targetPath,
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.springframework.core.io.Resource;
 import org.springframework.http.ResponseEntity;
@@ -11,6 +12,7 @@ import org.springframework.http.ResponseEntity;
 import com.example.demo.dto.FileFilters;
 import com.example.demo.dto.FolderContentResponse;
 import com.example.demo.dto.FolderDetailsRequest;
+import com.example.demo.dto.RunStatus;
 
 public interface FileCopyService {
 
@@ -21,6 +23,24 @@ public interface FileCopyService {
 
 	List<Map<String, Object>> purgeOnly(String sourcePath, BigDecimal runId, FileFilters filters);
 
+	/**
+	 * Queues a copy, copyandpurge, purgeonly or preview run and returns without
+	 * waiting for it. Progress is available through {@link #getRunStatus}.
+	 */
+	void submitRun(BigDecimal runId, String sourcePath, String destinationPath, String activity,
+			FileFilters filters, String encryptionKey);
+
+	RunStatus getRunStatus(BigDecimal runId);
+
+	/**
+	 * Runs an operation on the calling thread and hands every file's metadata to
+	 * {@code listener} as soon as it is produced, without keeping it.
+	 *
+	 * @return the run summary counters
+	 */
+	Map<String, Object> streamFiles(String sourcePath, String destinationPath, BigDecimal runId, String activity,
+			FileFilters filters, String encryptionKey, Consumer<Map<String, Object>> listener);
+
 	ResponseEntity<Resource> download(List<String> targetPath) throws Exception;
 
 	FolderContentResponse getFolderDetailsByPage(FolderDetailsRequest request, int pageNumber, int maxResultPerPage)
@@ -88,7 +88,7 @@ public class FileDownloadService {
 		if (fileName.endsWith(".enc") || fileName.endsWith(".gz")) {
 			return fileDownloadProcessor.processIfNeeded(filePath.toString());
 		} else {
-			return new ByteArrayResource(Files.readAllBytes(filePath));
+			return new ByteArrayResource(Files.readAllBytes(fileDownloadProcessor.resolveStoredPath(filePath)));
 		}
 	}
 
@@ -0,0 +1,127 @@
+package com.example.demo.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.config.FileCopyProperties;
+import com.example.demo.dto.RunStatus;
+import com.example.demo.thread.FilesCopyThread;
+
+/**
+ * In-process registry of submitted and running runs. Finished runs are kept
+ * until more than {@code filecopy.runs.retained-finished} have completed after
+ * them.
+ */
+@Component
+public class RunRegistry {
+
+	public static final String STATE_SUBMITTED = "SUBMITTED";
+	public static final String STATE_RUNNING = "RUNNING";
+	public static final String STATE_COMPLETED = "COMPLETED";
+	public static final String STATE_FAILED = "FAILED";
+
+	@Autowired
+	private FileCopyProperties properties;
+
+	private final Map<BigDecimal, RunEntry> runs = new ConcurrentHashMap<>();
+	private final Queue<BigDecimal> finishedRuns = new ConcurrentLinkedQueue<>();
+
+	public void register(BigDecimal runId, String activity, String sourcePath, String destinationPath) {
+		RunStatus status = new RunStatus();
+		status.setRunId(runId);
+		status.setActivity(activity);
+		status.setState(STATE_SUBMITTED);
+		status.setSourcePath(sourcePath);
+		status.setDestinationPath(destinationPath);
+		status.setSubmittedAt(LocalDateTime.now());
+		runs.put(runId, new RunEntry(status));
+	}
+
+	public void markRunning(BigDecimal runId, FilesCopyThread copyThread) {
+		RunEntry entry = runs.get(runId);
+		if (entry == null) {
+			return;
+		}
+		synchronized (entry) {
+			entry.copyThread = copyThread;
+			entry.status.setState(STATE_RUNNING);
+			entry.status.setStartedAt(LocalDateTime.now());
+		}
+	}
+
+	/** @param results the files a preview found, null for runs that persist their results */
+	public void markCompleted(BigDecimal runId, Map<String, Object> summary, List<Map<String, Object>> results) {
+		finish(runId, STATE_COMPLETED, summary, results, null);
+	}
+
+	public void markFailed(BigDecimal runId, String error) {
+		finish(runId, STATE_FAILED, null, null, error);
+	}
+
+	/**
+	 * @return a copy of the run's current status with live file counters, or
+	 *         null if the run is unknown or has been evicted.
+	 */
+	public RunStatus get(BigDecimal runId) {
+		RunEntry entry = runs.get(runId);
+		if (entry == null) {
+			return null;
+		}
+		synchronized (entry) {
+			entry.refreshCounters();
+			return new RunStatus(entry.status);
+		}
+	}
+
+	private void finish(BigDecimal runId, String state, Map<String, Object> summary,
+			List<Map<String, Object>> results, String error) {
+		RunEntry entry = runs.get(runId);
+		if (entry == null) {
+			return;
+		}
+		synchronized (entry) {
+			entry.refreshCounters();
+			entry.copyThread = null; // Release the run's task tracking
+			entry.status.setStageQueueDepths(null);
+			entry.status.setState(state);
+			entry.status.setFinishedAt(LocalDateTime.now());
+			entry.status.setSummary(summary);
+			entry.status.setResults(results);
+			entry.status.setError(error);
+		}
+
+		finishedRuns.add(runId);
+		int retained = Math.max(0, properties.getRuns().getRetainedFinished());
+		while (finishedRuns.size() > retained) {
+			BigDecimal evicted = finishedRuns.poll();
+			if (evicted != null) {
+				runs.remove(evicted);
+			}
+		}
+	}
+
+	private static class RunEntry {
+		private final RunStatus status;
+		private FilesCopyThread copyThread;
+
+		RunEntry(RunStatus status) {
+			this.status = status;
+		}
+
+		void refreshCounters() {
+			if (copyThread != null) {
+				status.setFilesSubmitted(copyThread.getFilesSubmitted());
+				status.setFilesCompleted(copyThread.getFilesCompleted());
+				status.setStageQueueDepths(copyThread.getStageQueueDepths());
+			}
+		}
+	}
+}
@@ -1,18 +1,92 @@
 package com.example.demo.service;
 
 import java.math.BigDecimal;
-import java.util.Random;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import com.example.demo.config.FileCopyProperties;
+
+/**
+ * Hands out run ids that are unique across concurrent runs and nodes. Ids are
+ * reserved from the {@code run_id_sequence} table in blocks of
+ * {@code filecopy.runs.id-block-size} (hi/lo): one atomic UPDATE reserves a
+ * block, and the ids in it are then handed out in memory without locking.
+ *
+ * The sequence starts above both 9999 (the range of the former random ids)
+ * and the highest run id already in {@code file_meta_data}, so new ids never
+ * meet old rows. Ids left in a block when the node stops are skipped.
+ */
 @Service
 public class nextRunIdGenerator {
-	private final Random random = new Random();
+
+	private static final Logger logger = LoggerFactory.getLogger(nextRunIdGenerator.class);
+
+	private static final String SEQUENCE_NAME = "run_id";
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private FileCopyProperties properties;
+
+	private volatile IdBlock block = new IdBlock(0, 0);
+	private boolean sequenceReady;
 
 	public BigDecimal generateNextRunId() {
+		while (true) {
+			IdBlock current = block;
+			long id = current.next.getAndIncrement();
+			if (id < current.end) {
+				return BigDecimal.valueOf(id);
+			}
+			reserveBlock(current);
+		}
+	}
+
+	private synchronized void reserveBlock(IdBlock exhausted) {
+		if (block != exhausted) {
+			return; // Another thread already reserved the next block
+		}
+		if (!sequenceReady) {
+			createSequence();
+			sequenceReady = true;
+		}
+		long blockSize = Math.max(1, properties.getRuns().getIdBlockSize());
+		// LAST_INSERT_ID(expr) returns the updated value on this connection, so both
+		// statements must share it
+		long end = jdbcTemplate.execute((Statement statement) -> {
+			statement.executeUpdate("UPDATE run_id_sequence SET next_val = LAST_INSERT_ID(next_val + " + blockSize
+					+ ") WHERE name = '" + SEQUENCE_NAME + "'");
+			try (ResultSet rs = statement.executeQuery("SELECT LAST_INSERT_ID()")) {
+				rs.next();
+				return rs.getLong(1);
+			}
+		});
+		block = new IdBlock(end - blockSize, end);
+		logger.info("Reserved run ids {} to {}", end - blockSize, end - 1);
+	}
+
+	private void createSequence() {
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS run_id_sequence (name varchar(50) NOT NULL PRIMARY KEY, "
+				+ "next_val bigint NOT NULL)");
+		jdbcTemplate.update("INSERT IGNORE INTO run_id_sequence (name, next_val) "
+				+ "SELECT ?, GREATEST(10000, COALESCE(MAX(run_id), 0) + 1) FROM file_meta_data", SEQUENCE_NAME);
+	}
 
-		int randomNumber = random.nextInt(9999 - 1000 + 1) + 1000;
+	private static final class IdBlock {
+		private final AtomicLong next;
+		private final long end; // Exclusive
 
-		return new BigDecimal(randomNumber);
+		private IdBlock(long start, long end) {
+			this.next = new AtomicLong(start);
+			this.end = end;
+		}
 	}
 }
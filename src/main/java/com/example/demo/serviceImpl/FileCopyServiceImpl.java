@@ -6,6 +6,12 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,14 +21,26 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import com.example.demo.config.FileCopyProperties;
 import com.example.demo.dto.FileFilters;
 import com.example.demo.dto.FolderContentResponse;
 import com.example.demo.dto.FolderDetailsRequest;
+import com.example.demo.dto.RunStatus;
 import com.example.demo.repository.FileDetailsStore;
 import com.example.demo.service.FileCopyService;
 import com.example.demo.service.FileDownloadService;
-import com.example.demo.thread.FileDetailsUpdate;
+import com.example.demo.service.RunRegistry;
+import com.example.demo.thread.ChunkedFileCopier;
+import com.example.demo.thread.CopyContextPool;
+import com.example.demo.thread.CopyWorkerPool;
+import com.example.demo.thread.DirectoryScanner;
 import com.example.demo.thread.FilesCopyThread;
+import com.example.demo.thread.MetadataBatchWriter;
+import com.example.demo.thread.RunContext;
+import com.example.demo.thread.RunResultSink;
 import com.example.demo.util.FolderContentScanner;
 import com.example.demo.util.LogDownloadService;
 
@@ -44,13 +62,52 @@ public class FileCopyServiceImpl implements FileCopyService {
 	@Autowired
 	private JdbcTemplate jdbcTemplate; // for dynamic SQL operations
 
+	@Autowired
+	private CopyWorkerPool copyWorkerPool;
+
+	@Autowired
+	private DirectoryScanner directoryScanner;
+
+	@Autowired
+	private CopyContextPool copyContextPool;
+
+	@Autowired
+	private ChunkedFileCopier chunkedFileCopier;
+
+	@Autowired
+	private RunRegistry runRegistry;
+
+	@Autowired
+	private FileCopyProperties properties;
+
+	// Executes submitted runs so the HTTP thread can return the runId right away
+	private ExecutorService runExecutor;
+
+	@PostConstruct
+	void startRunExecutor() {
+		int maxConcurrent = Math.max(1, properties.getRuns().getMaxConcurrent());
+		AtomicInteger threadNumber = new AtomicInteger(0);
+		runExecutor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "file-copy-run-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	@PreDestroy
+	void stopRunExecutor() {
+		runExecutor.shutdownNow();
+	}
+
 	@Override
 	public List<Map<String, Object>> copyFiles(String sourcePath, String destinationPath, BigDecimal runId,
 			String activity, FileFilters filters, String encryptionKey) {
-		List<Map<String, Object>> metadataResults = executeFileOperation(sourcePath, destinationPath, runId, activity,
-				filters, encryptionKey);
+		runRegistry.register(runId, activity, sourcePath, destinationPath);
+		RunResultSink resultSink = new RunResultSink(true);
+		executeFileOperation(sourcePath, destinationPath, runId, activity, filters, encryptionKey, resultSink);
 
-		return metadataResults;
+		return resultSink.getResults();
 	}
 
 //	@Override
@@ -63,36 +120,92 @@ public class FileCopyServiceImpl implements FileCopyService {
 	@Override
 	public List<Map<String, Object>> previewFiles(String sourcePath, FileFilters filters) {
 
-		return executeFileOperation(sourcePath, null, null, "preview", filters, null);
+		RunResultSink resultSink = new RunResultSink(true);
+		executeFileOperation(sourcePath, null, null, "preview", filters, null, resultSink);
+		return resultSink.getResults();
 	}
 
 	@Override
 	public List<Map<String, Object>> purgeOnly(String sourcePath, BigDecimal runId, FileFilters filters) {
+		runRegistry.register(runId, "purgeonly", sourcePath, null);
+		RunResultSink resultSink = new RunResultSink(true);
+		executeFileOperation(sourcePath, null, runId, "purgeonly", filters, null, resultSink);
+		return resultSink.getResults();
+	}
 
-		return executeFileOperation(sourcePath, null, runId, "purgeonly", filters, null);
+	@Override
+	public void submitRun(BigDecimal runId, String sourcePath, String destinationPath, String activity,
+			FileFilters filters, String encryptionKey) {
+		runRegistry.register(runId, activity, sourcePath, destinationPath);
+		// A preview persists nothing, so its results are kept for the run status
+		RunResultSink resultSink = "preview".equalsIgnoreCase(activity)
+				? new RunResultSink(Math.max(0, properties.getRuns().getPreviewResultLimit()), null)
+				: new RunResultSink(false);
+		runExecutor.execute(() -> executeFileOperation(sourcePath, destinationPath, runId, activity, filters,
+				encryptionKey, resultSink));
+		Logger.info("Submitted {} run {}", activity, runId);
 	}
 
-	private List<Map<String, Object>> executeFileOperation(String sourcePath, String destinationPath, BigDecimal runId,
-			String activity, FileFilters filters, String encryptionKey) {
-		FileDetailsUpdate.clear();
+	@Override
+	public RunStatus getRunStatus(BigDecimal runId) {
+		return runRegistry.get(runId);
+	}
 
-		File srcDir = new File(sourcePath);
-		File destDir = (destinationPath != null) ? new File(destinationPath) : null;
+	@Override
+	public Map<String, Object> streamFiles(String sourcePath, String destinationPath, BigDecimal runId,
+			String activity, FileFilters filters, String encryptionKey, Consumer<Map<String, Object>> listener) {
+		if (runId != null) {
+			runRegistry.register(runId, activity, sourcePath, destinationPath);
+		}
+		RunResultSink resultSink = new RunResultSink(false, listener);
+		executeFileOperation(sourcePath, destinationPath, runId, activity, filters, encryptionKey, resultSink);
+		return resultSink.getSummary();
+	}
 
+	/**
+	 * Runs one operation end to end. Results go to the sink owned by this run,
+	 * which the caller releases once it has read them.
+	 */
+	private void executeFileOperation(String sourcePath, String destinationPath, BigDecimal runId, String activity,
+			FileFilters filters, String encryptionKey, RunResultSink resultSink) {
+		Logger.info("Starting {} run {} using {} copy workers", activity, runId, copyWorkerPool.getMode());
+		MetadataBatchWriter metadataWriter = null;
 		try {
-			Runnable R = new FilesCopyThread(srcDir, destDir, FileDetailsStore, runId, activity, filters, encryptionKey,
-					jdbcTemplate);
-			Thread Tr = new Thread(R);
-			Tr.start();
-
-			Tr.join();
-		} catch (InterruptedException e) {
-			Logger.error("File operation thread was interrupted", e);
+			File srcDir = new File(sourcePath);
+			File destDir = (destinationPath != null) ? new File(destinationPath) : null;
+
+			// Preview only reports; every other activity records a metadata row per file
+			metadataWriter = "preview".equalsIgnoreCase(activity) ? null
+					: new MetadataBatchWriter(jdbcTemplate, properties.getMetadata().getBatchSize(),
+							properties.getMetadata().getFlushIntervalMs(), properties.getMetadata().getQueueCapacity(),
+							String.valueOf(runId));
+			RunContext runContext = new RunContext(runId, activity, filters, encryptionKey, srcDir, destDir,
+					FileDetailsStore, resultSink, copyContextPool, chunkedFileCopier, metadataWriter);
+			FilesCopyThread copyThread = new FilesCopyThread(runContext, jdbcTemplate, copyWorkerPool,
+					directoryScanner, properties);
+			if (runId != null) {
+				runRegistry.markRunning(runId, copyThread);
+			}
+			// Runs on the caller's thread: the HTTP thread for synchronous requests, a
+			// run executor thread for submitted runs
+			copyThread.run();
 		} catch (Exception e) {
 			Logger.error("An error occurred during file operation", e);
+			if (runId != null) {
+				runRegistry.markFailed(runId, e.getMessage());
+			}
+			return;
+		} finally {
+			if (metadataWriter != null) {
+				metadataWriter.close(); // Already drained unless the run failed before its traversal ended
+				resultSink.addUnsavedMetadataRows(metadataWriter.getFailedRowCount());
+			}
 		}
 
-		return FileDetailsUpdate.getAll();
+		if (runId != null) {
+			runRegistry.markCompleted(runId, resultSink.getSummary(),
+					"preview".equalsIgnoreCase(activity) ? resultSink.getResults() : null);
+		}
 	}
 
 	@Override
@@ -0,0 +1,83 @@
+package com.example.demo.thread;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton answering whether a text contains any of a set of
+ * literals. Built once; a search reads the text once, however many literals
+ * there are. Immutable after construction and safe to share between threads.
+ */
+final class AhoCorasick {
+
+	private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+	private final int[] failure;
+	private final boolean[] terminal; // A literal ends here or at a state on its failure chain
+
+	AhoCorasick(Collection<String> literals) {
+		List<Boolean> ends = new ArrayList<>();
+		transitions.add(new HashMap<>());
+		ends.add(false);
+		for (String literal : literals) {
+			int state = 0;
+			for (int i = 0; i < literal.length(); i++) {
+				Integer next = transitions.get(state).get(literal.charAt(i));
+				if (next == null) {
+					next = transitions.size();
+					transitions.get(state).put(literal.charAt(i), next);
+					transitions.add(new HashMap<>());
+					ends.add(false);
+				}
+				state = next;
+			}
+			ends.set(state, true);
+		}
+
+		failure = new int[transitions.size()];
+		terminal = new boolean[transitions.size()];
+		for (int i = 0; i < terminal.length; i++) {
+			terminal[i] = ends.get(i);
+		}
+		// Breadth first, so a state's failure target is final before its children are visited
+		Queue<Integer> queue = new ArrayDeque<>(transitions.get(0).values());
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			for (Map.Entry<Character, Integer> edge : transitions.get(state).entrySet()) {
+				int child = edge.getValue();
+				int fallback = failure[state];
+				while (fallback != 0 && !transitions.get(fallback).containsKey(edge.getKey())) {
+					fallback = failure[fallback];
+				}
+				Integer target = transitions.get(fallback).get(edge.getKey());
+				failure[child] = (target != null && target != child) ? target : 0;
+				terminal[child] |= terminal[failure[child]];
+				queue.add(child);
+			}
+		}
+	}
+
+	boolean containsAny(String text) {
+		if (terminal[0]) {
+			return true; // The empty literal is in every text
+		}
+		int state = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			Integer next = transitions.get(state).get(c);
+			while (next == null && state != 0) {
+				state = failure[state];
+				next = transitions.get(state).get(c);
+			}
+			state = next != null ? next : 0;
+			if (terminal[state]) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,111 @@
+package com.example.demo.thread;
+
+import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Size and modification time of the files archived by earlier runs from one
+ * source root to one destination root, keyed by source path. Loaded once per
+ * incremental run with a single streaming query, so checking a file is a map
+ * lookup instead of a database round-trip.
+ *
+ * Only the latest {@code file_meta_data} row of each source path counts: a
+ * file whose last copy failed is copied again.
+ */
+public class ArchivedFileIndex {
+
+	private static final Logger logger = LoggerFactory.getLogger(ArchivedFileIndex.class);
+
+	private static final String SELECT_SQL = "SELECT file_path, size, modification_date, is_archived "
+			+ "FROM file_meta_data WHERE (file_path = ? OR file_path LIKE ?) "
+			+ "AND (target_path = ? OR target_path LIKE ?) ORDER BY created_at";
+
+	private final Map<String, ArchivedFile> files;
+
+	private ArchivedFileIndex(Map<String, ArchivedFile> files) {
+		this.files = files;
+	}
+
+	public static ArchivedFileIndex load(JdbcTemplate jdbcTemplate, File sourceRoot, File destinationRoot) {
+		Map<String, ArchivedFile> files = new HashMap<>();
+		long start = System.currentTimeMillis();
+
+		jdbcTemplate.query(connection -> {
+			PreparedStatement statement = connection.prepareStatement(SELECT_SQL);
+			// Lets MySQL Connector/J stream the rows instead of buffering the whole result
+			statement.setFetchSize(Integer.MIN_VALUE);
+			statement.setString(1, sourceRoot.getAbsolutePath());
+			statement.setString(2, likePrefix(sourceRoot));
+			statement.setString(3, destinationRoot.getAbsolutePath());
+			statement.setString(4, likePrefix(destinationRoot));
+			return statement;
+		}, rs -> {
+			// Rows arrive oldest first, so the latest row of each path is the one kept
+			long size = rs.getLong("size");
+			boolean sizeKnown = !rs.wasNull();
+			LocalDateTime modified = rs.getObject("modification_date", LocalDateTime.class);
+			files.put(rs.getString("file_path"), new ArchivedFile(sizeKnown ? size : -1,
+					modified != null ? toEpochMicros(modified.toInstant(ZoneOffset.UTC)) : Long.MIN_VALUE,
+					"Y".equals(rs.getString("is_archived"))));
+		});
+
+		logger.info("Loaded {} archived files under {} for incremental sync in {} ms", files.size(),
+				sourceRoot.getAbsolutePath(), System.currentTimeMillis() - start);
+		return new ArchivedFileIndex(files);
+	}
+
+	/**
+	 * True when the file was archived successfully and its size and modification
+	 * time are the ones recorded then.
+	 */
+	public boolean isUnchanged(File file, BasicFileAttributes attrs) {
+		ArchivedFile archived = files.get(file.getAbsolutePath());
+		// The column keeps microseconds, so the file's time is compared at that precision
+		return archived != null && archived.archived && archived.size == attrs.size()
+				&& archived.modifiedMicros == toEpochMicros(attrs.lastModifiedTime().toInstant());
+	}
+
+	public int size() {
+		return files.size();
+	}
+
+	private static long toEpochMicros(Instant instant) {
+		return instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1_000;
+	}
+
+	/**
+	 * LIKE pattern matching every path below {@code root}, but not {@code root}
+	 * itself or a sibling that merely starts with its name ({@code /data/ab} for
+	 * {@code /data/a}); callers compare with {@code root} separately.
+	 */
+	static String likePrefix(File root) {
+		String path = root.getAbsolutePath();
+		if (!path.endsWith(File.separator)) {
+			path += File.separator; // Only "/" and drive roots already end with one
+		}
+		// MySQL's default LIKE escape character is the backslash
+		return path.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+	}
+
+	private static final class ArchivedFile {
+		private final long size;
+		private final long modifiedMicros;
+		private final boolean archived;
+
+		private ArchivedFile(long size, long modifiedMicros, boolean archived) {
+			this.size = size;
+			this.modifiedMicros = modifiedMicros;
+			this.archived = archived;
+		}
+	}
+}
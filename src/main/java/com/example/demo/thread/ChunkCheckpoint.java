@@ -0,0 +1,147 @@
+package com.example.demo.thread;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sidecar file ({@code <target>.ckpt}) recording which byte ranges of a large
+ * copy have been written and flushed to the destination, together with their
+ * digests. If the JVM dies mid-file, the next copy of the same source to the
+ * same destination skips the recorded ranges instead of starting at byte zero.
+ *
+ * The header identifies the source (path, size, modification time) and the
+ * chunk layout; a checkpoint whose header does not match the current copy is
+ * discarded. Each completed range is appended as one line and forced to disk
+ * after the range data itself has been forced.
+ */
+public class ChunkCheckpoint implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(ChunkCheckpoint.class);
+
+	public static final String SUFFIX = ".ckpt";
+	private static final String CHUNK_PREFIX = "chunk ";
+
+	private final Path checkpointPath;
+	private final Map<Integer, byte[]> completedChunks;
+	private final boolean resumed;
+	private FileChannel channel;
+
+	private ChunkCheckpoint(Path checkpointPath, Map<Integer, byte[]> completedChunks, boolean resumed) {
+		this.checkpointPath = checkpointPath;
+		this.completedChunks = completedChunks;
+		this.resumed = resumed;
+	}
+
+	public static Path pathFor(Path target) {
+		return target.resolveSibling(target.getFileName() + SUFFIX);
+	}
+
+	public static boolean exists(Path target) {
+		return Files.exists(pathFor(target));
+	}
+
+	/**
+	 * Opens the checkpoint for copying {@code source} to {@code target}. A
+	 * matching checkpoint left by an earlier attempt is resumed; anything else is
+	 * replaced by a fresh one.
+	 */
+	public static ChunkCheckpoint open(Path source, Path target, long sourceSize, long sourceModified,
+			long chunkSize, String algorithm) throws IOException {
+		Path checkpointPath = pathFor(target);
+		String header = header(source, sourceSize, sourceModified, chunkSize, algorithm);
+
+		Map<Integer, byte[]> completed = new ConcurrentHashMap<>();
+		boolean resumed = false;
+		try {
+			List<String> lines = Files.readAllLines(checkpointPath, StandardCharsets.UTF_8);
+			if (!lines.isEmpty() && header.equals(lines.get(0)) && Files.exists(target)) {
+				for (String line : lines.subList(1, lines.size())) {
+					String[] parts = line.split(" ");
+					if (line.startsWith(CHUNK_PREFIX) && parts.length == 3) {
+						completed.put(Integer.parseInt(parts[1]), HexFormat.of().parseHex(parts[2]));
+					}
+				}
+				resumed = true;
+				logger.info("Resuming copy of {} from checkpoint with {} completed chunks", source,
+						completed.size());
+			} else {
+				logger.info("Discarding checkpoint {} that does not match the current copy", checkpointPath);
+			}
+		} catch (NoSuchFileException e) {
+			// No earlier attempt
+		} catch (IllegalArgumentException e) {
+			logger.warn("Ignoring unreadable checkpoint {}: {}", checkpointPath, e.getMessage());
+			completed.clear();
+		}
+
+		ChunkCheckpoint checkpoint = new ChunkCheckpoint(checkpointPath, completed, resumed);
+		if (resumed) {
+			checkpoint.channel = FileChannel.open(checkpointPath, StandardOpenOption.WRITE,
+					StandardOpenOption.APPEND);
+		} else {
+			checkpoint.channel = FileChannel.open(checkpointPath, StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+			checkpoint.append(header + "\n");
+		}
+		return checkpoint;
+	}
+
+	/** True when an earlier attempt's progress is being reused. */
+	public boolean isResumed() {
+		return resumed;
+	}
+
+	/** Digest of a chunk completed by an earlier attempt, or null. */
+	public byte[] completedDigest(int chunkIndex) {
+		return completedChunks.get(chunkIndex);
+	}
+
+	/**
+	 * Records a chunk whose data has already been forced to the destination.
+	 */
+	public synchronized void recordCompleted(int chunkIndex, byte[] digest) throws IOException {
+		completedChunks.put(chunkIndex, digest);
+		append(CHUNK_PREFIX + chunkIndex + " " + HexFormat.of().formatHex(digest) + "\n");
+	}
+
+	/** Removes the sidecar once the whole file has been copied. */
+	public void complete() throws IOException {
+		close();
+		Files.deleteIfExists(checkpointPath);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+
+	private void append(String line) throws IOException {
+		ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+		channel.force(false);
+	}
+
+	private static String header(Path source, long sourceSize, long sourceModified, long chunkSize,
+			String algorithm) {
+		return "source=" + source.toAbsolutePath() + "|size=" + sourceSize + "|modified=" + sourceModified
+				+ "|chunkSize=" + chunkSize + "|algorithm=" + algorithm;
+	}
+}
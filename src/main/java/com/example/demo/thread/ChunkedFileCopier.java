@@ -0,0 +1,288 @@
+package com.example.demo.thread;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies very large untransformed files as independent byte ranges. Each
+ * range is read and written with positional {@link FileChannel} calls on its
+ * own chunk thread, so a striped destination sees several outstanding writes
+ * instead of one sequential stream.
+ *
+ * Every range gets its own digest. The file checksum is the digest of the
+ * concatenated range digests in file order, so it depends on the chunk size,
+ * which is recorded with the file's metadata. Completed ranges are
+ * checkpointed, so an interrupted copy resumes where it stopped.
+ */
+public class ChunkedFileCopier {
+
+	private static final Logger logger = LoggerFactory.getLogger(ChunkedFileCopier.class);
+
+	private static final int IO_BUFFER_SIZE = 1024 * 1024;
+
+	private final ExecutorService chunkExecutor;
+	private final long thresholdBytes;
+	private final long chunkSizeBytes;
+
+	// Chunk threads are long-lived platform threads, so per-thread buffers are reused
+	private final ThreadLocal<ByteBuffer> ioBuffers = ThreadLocal
+			.withInitial(() -> ByteBuffer.allocateDirect(IO_BUFFER_SIZE));
+	private final ThreadLocal<Map<String, MessageDigest>> chunkDigests = ThreadLocal.withInitial(HashMap::new);
+
+	public ChunkedFileCopier(long thresholdBytes, long chunkSizeBytes, int parallelism) {
+		this.thresholdBytes = thresholdBytes;
+		this.chunkSizeBytes = Math.max(IO_BUFFER_SIZE, chunkSizeBytes);
+
+		AtomicInteger threadNumber = new AtomicInteger(0);
+		this.chunkExecutor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+			Thread thread = new Thread(runnable, "file-copy-chunk-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public boolean appliesTo(long fileSize) {
+		return thresholdBytes > 0 && fileSize >= thresholdBytes;
+	}
+
+	public long getChunkSizeBytes() {
+		return chunkSizeBytes;
+	}
+
+	/**
+	 * Copies {@code source} to {@code target} range by range. Progress is recorded
+	 * in a {@link ChunkCheckpoint} next to the target; ranges completed by an
+	 * earlier, interrupted attempt at the same copy are not copied again. The
+	 * checkpoint is removed once every range has been written. A fresh copy
+	 * deletes an existing target instead of truncating it, so a target that is
+	 * a hardlink to a content-store object never has the object's bytes
+	 * overwritten.
+	 *
+	 * @param fileDigest digest used to combine the range digests; its algorithm is
+	 *                   also used for each range
+	 * @return the number of bytes the target holds for the source
+	 */
+	public long copy(Path source, Path target, MessageDigest fileDigest) throws IOException {
+		String algorithm = fileDigest.getAlgorithm();
+		long sourceModified = Files.getLastModifiedTime(source).toMillis();
+
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+			long size = in.size();
+
+			try (ChunkCheckpoint checkpoint = ChunkCheckpoint.open(source, target, size, sourceModified,
+					chunkSizeBytes, algorithm);
+					FileChannel out = checkpoint.isResumed()
+							? FileChannel.open(target, StandardOpenOption.WRITE)
+							: openNewTarget(target)) {
+
+				long existingTargetSize = out.size();
+				RangeTracker tracker = new RangeTracker();
+				List<Future<byte[]>> chunks = new ArrayList<>();
+				int skipped = 0;
+				int chunkIndex = 0;
+				for (long start = 0; start < size; start += chunkSizeBytes, chunkIndex++) {
+					long chunkStart = start;
+					long chunkLength = Math.min(chunkSizeBytes, size - start);
+					int index = chunkIndex;
+
+					byte[] completedDigest = checkpoint.completedDigest(index);
+					if (completedDigest != null && chunkStart + chunkLength <= existingTargetSize) {
+						chunks.add(CompletableFuture.completedFuture(completedDigest));
+						skipped++;
+						continue;
+					}
+					chunks.add(chunkExecutor.submit(() -> {
+						if (!tracker.enter()) {
+							throw new IOException("Copy aborted before chunk " + index + " started");
+						}
+						try {
+							byte[] digest = copyRange(in, out, chunkStart, chunkLength, algorithm, tracker::isAborted);
+							out.force(false); // Range data is durable before it is recorded
+							checkpoint.recordCompleted(index, digest);
+							return digest;
+						} catch (Exception e) {
+							tracker.fail(e); // Siblings stop at their next buffer
+							throw e;
+						} finally {
+							tracker.exit();
+						}
+					}));
+				}
+				logger.info("Copying {} ({} bytes) in {} chunks, {} already completed", source, size, chunks.size(),
+						skipped);
+
+				try {
+					for (Future<byte[]> chunk : chunks) {
+						fileDigest.update(chunk.get());
+					}
+				} catch (InterruptedException e) {
+					abortChunks(chunks, tracker);
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while copying chunks of " + source, e);
+				} catch (ExecutionException e) {
+					abortChunks(chunks, tracker);
+					// The first range to fail, not a sibling that stopped because of it
+					Throwable cause = tracker.getFailure() != null ? tracker.getFailure() : e.getCause();
+					throw new IOException("Chunk copy failed for " + source + ": " + cause.getMessage(), cause);
+				}
+
+				if (out.size() > size) {
+					out.truncate(size); // Target was longer than the source, e.g. a stale file
+				}
+				checkpoint.complete();
+				return size;
+			}
+		}
+	}
+
+	/**
+	 * Stops the remaining ranges without interrupting them: an interrupt during a
+	 * positional write closes the shared target channel for every range. Queued
+	 * ranges are cancelled, running ones stop at their next buffer, and this
+	 * returns once none is running, so the checkpoint only ever records ranges
+	 * that were fully written.
+	 */
+	private static void abortChunks(List<Future<byte[]>> chunks, RangeTracker tracker) {
+		tracker.abort();
+		chunks.forEach(chunk -> chunk.cancel(false));
+		tracker.awaitIdle();
+	}
+
+	private static FileChannel openNewTarget(Path target) throws IOException {
+		Files.deleteIfExists(target);
+		return FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+	}
+
+	public void shutdown() {
+		chunkExecutor.shutdownNow();
+		try {
+			chunkExecutor.awaitTermination(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Copies one range and returns its digest. {@code aborted} is checked before
+	 * every buffer, so a failing sibling stops this range within one buffer.
+	 */
+	byte[] copyRange(FileChannel in, FileChannel out, long start, long length, String algorithm,
+			BooleanSupplier aborted) throws IOException, NoSuchAlgorithmException {
+		ByteBuffer buffer = ioBuffers.get();
+		MessageDigest digest = chunkDigest(algorithm);
+
+		long position = start;
+		long end = start + length;
+		while (position < end) {
+			if (aborted.getAsBoolean()) {
+				throw new IOException("Copy aborted at byte " + position + " of chunk starting at " + start);
+			}
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - position));
+			int read = in.read(buffer, position);
+			if (read < 0) {
+				throw new IOException("Source ended at byte " + position + " while copying chunk starting at " + start);
+			}
+			buffer.flip();
+			digest.update(buffer.duplicate());
+
+			long writePosition = position;
+			while (buffer.hasRemaining()) {
+				writePosition += out.write(buffer, writePosition);
+			}
+			position += read;
+		}
+		return digest.digest();
+	}
+
+	private MessageDigest chunkDigest(String algorithm) throws NoSuchAlgorithmException {
+		Map<String, MessageDigest> digests = chunkDigests.get();
+		MessageDigest digest = digests.get(algorithm);
+		if (digest == null) {
+			digest = MessageDigest.getInstance(algorithm);
+			digests.put(algorithm, digest);
+		} else {
+			digest.reset();
+		}
+		return digest;
+	}
+
+	/** Ranges of one copy that are running, and whether the copy has been aborted. */
+	private static final class RangeTracker {
+		private volatile boolean aborted;
+		private int running;
+		private Throwable failure;
+
+		/** @return false when the copy was aborted before this range started */
+		synchronized boolean enter() {
+			if (aborted) {
+				return false;
+			}
+			running++;
+			return true;
+		}
+
+		synchronized void exit() {
+			running--;
+			if (running == 0) {
+				notifyAll();
+			}
+		}
+
+		boolean isAborted() {
+			return aborted;
+		}
+
+		void abort() {
+			aborted = true;
+		}
+
+		/** Aborts the copy, remembering the first failure. */
+		synchronized void fail(Throwable cause) {
+			if (failure == null) {
+				failure = cause;
+			}
+			aborted = true;
+		}
+
+		synchronized Throwable getFailure() {
+			return failure;
+		}
+
+		/** Waits for the running ranges; each one stops within a buffer once aborted. */
+		synchronized void awaitIdle() {
+			boolean interrupted = false;
+			while (running > 0) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.example.demo.thread;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Content-addressed area under {@code <destination root>/.cas} that stores each
+ * distinct file content once, named by the checksum of the source bytes:
+ * {@code .cas/<algorithm>/<first two hex digits>/<checksum>[.gz]}.
+ *
+ * Objects are written to {@code .cas/tmp} and moved into place atomically, so a
+ * reader never sees a partial object and concurrent writers of the same
+ * content simply replace each other with identical bytes. Logical target paths
+ * are hardlinks to the object; where the file system cannot link, the target
+ * is left to the metadata row's {@code contentRef}.
+ *
+ * Every object carries a {@code .sum} sidecar with the checksum of the stored
+ * bytes, written before the object becomes visible. An object is only reused
+ * when its sidecar is present, names the expected content and is not older
+ * than the object: a write through one of its hardlinks would leave the object
+ * newer than its sidecar.
+ */
+public class ContentStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(ContentStore.class);
+
+	public static final String DIRECTORY_NAME = ".cas";
+	private static final String SUM_SUFFIX = ".sum";
+
+	private final Path root;
+	private final Path tempDirectory;
+
+	public ContentStore(Path destinationRoot) throws IOException {
+		this.root = destinationRoot.resolve(DIRECTORY_NAME);
+		this.tempDirectory = root.resolve("tmp");
+		Files.createDirectories(tempDirectory);
+	}
+
+	public Path objectPath(String algorithm, String contentChecksum, boolean compressed) {
+		return root.resolve(algorithm).resolve(contentChecksum.substring(0, 2))
+				.resolve(compressed ? contentChecksum + ".gz" : contentChecksum);
+	}
+
+	/**
+	 * Checksum of the bytes stored in {@code object}, or null when the object is
+	 * missing, unverified or changed since it was stored, and has to be written.
+	 *
+	 * @param contentChecksum checksum of the source content the object is named by
+	 * @param contentSize     size of that content
+	 */
+	public String storedChecksum(Path object, String contentChecksum, long contentSize, boolean compressed) {
+		try {
+			Path sum = sumPath(object);
+			BasicFileAttributes objectAttrs = Files.readAttributes(object, BasicFileAttributes.class);
+			if (objectAttrs.lastModifiedTime().compareTo(Files.getLastModifiedTime(sum)) > 0) {
+				logger.warn("Stored content {} changed after it was stored, writing it again", object);
+				return null;
+			}
+			String storedChecksum = Files.readString(sum, StandardCharsets.US_ASCII).trim();
+			if (compressed) {
+				return storedChecksum;
+			}
+			// Uncompressed objects hold the content itself
+			return storedChecksum.equals(contentChecksum) && objectAttrs.size() == contentSize ? storedChecksum
+					: null;
+		} catch (NoSuchFileException e) {
+			return null; // Not stored yet, or stored before objects had a sidecar
+		} catch (IOException e) {
+			logger.warn("Could not inspect stored content {}: {}", object, e.getMessage());
+			return null;
+		}
+	}
+
+	public Path newTempFile() {
+		return tempDirectory.resolve(UUID.randomUUID().toString());
+	}
+
+	/**
+	 * Moves a completely written temp file into place as {@code object}.
+	 *
+	 * @param storedChecksum checksum of the bytes in the temp file
+	 */
+	public void publish(Path tempFile, Path object, String storedChecksum) throws IOException {
+		Files.createDirectories(object.getParent());
+		// The checksum is in place, and newer than the object's bytes, before the object becomes visible
+		Path tempSum = newTempFile();
+		Files.writeString(tempSum, storedChecksum, StandardCharsets.US_ASCII);
+		Files.move(tempSum, sumPath(object), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		Files.move(tempFile, object, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Makes {@code target} a hardlink to {@code object}, replacing any existing
+	 * target file. The copiers delete a target before writing it, so a later
+	 * copy to the same path replaces the link instead of writing through it.
+	 *
+	 * @return false when the file system cannot link the two paths
+	 */
+	public boolean link(Path target, Path object) throws IOException {
+		Files.deleteIfExists(target);
+		// A stale checkpoint would make the next chunked copy resume inside the object
+		Files.deleteIfExists(ChunkCheckpoint.pathFor(target));
+		try {
+			Files.createLink(target, object);
+			return true;
+		} catch (UnsupportedOperationException | FileSystemException e) {
+			logger.warn("Cannot hardlink {} to {}, recording a content reference only: {}", target, object,
+					e.getMessage());
+			return false;
+		}
+	}
+
+	private static Path sumPath(Path object) {
+		return object.resolveSibling(object.getFileName() + SUM_SUFFIX);
+	}
+}
@@ -0,0 +1,161 @@
+package com.example.demo.thread;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Reusable per-worker state for copying one file at a time: the copy buffer,
+ * message digests, the AES cipher and the GZIP deflater. A context is borrowed
+ * from a {@link CopyContextPool} for one file and returned afterwards, so the
+ * per-file hot path does not allocate these objects again.
+ *
+ * The copy and deflate buffers are allocated on first use. Untransformed copies
+ * move bytes in the kernel and only need the digests, so a context that has
+ * served nothing else stays a few hundred bytes.
+ *
+ * A context is not thread-safe; only the worker that borrowed it may use it.
+ */
+public class CopyContext {
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final int bufferSize;
+	private byte[] buffer;
+	private ByteBuffer channelBuffer; // View of buffer for channel reads
+	private byte[] deflateBuffer;
+
+	private final Map<String, MessageDigest> sourceDigests = new HashMap<>();
+	private final Map<String, MessageDigest> targetDigests = new HashMap<>();
+
+	private Cipher cipher;
+	private String cipherKey;
+	private SecretKeySpec cipherKeySpec;
+
+	private Deflater deflater;
+	private final CRC32 crc = new CRC32();
+
+	public CopyContext(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public byte[] getBuffer() {
+		if (buffer == null) {
+			buffer = new byte[bufferSize];
+		}
+		return buffer;
+	}
+
+	/**
+	 * The copy buffer wrapped for {@link java.nio.channels.FileChannel} reads,
+	 * cleared. Channel reads into a heap buffer go through the JDK's cached
+	 * per-thread direct buffer, where {@code FileInputStream} would allocate a
+	 * native buffer on every read larger than 8 KB.
+	 */
+	public ByteBuffer getChannelBuffer() {
+		if (channelBuffer == null) {
+			channelBuffer = ByteBuffer.wrap(getBuffer());
+		}
+		channelBuffer.clear();
+		return channelBuffer;
+	}
+
+	/** Digest for the source bytes, reset and ready for a new file. */
+	public MessageDigest sourceDigest(String algorithm) throws NoSuchAlgorithmException {
+		return resetDigest(sourceDigests, algorithm);
+	}
+
+	/** Digest for the bytes written to the target, reset and ready for a new file. */
+	public MessageDigest targetDigest(String algorithm) throws NoSuchAlgorithmException {
+		return resetDigest(targetDigests, algorithm);
+	}
+
+	/**
+	 * AES cipher initialized for encryption with the given Base64 key. The key is
+	 * decoded only when it differs from the previous file's key; runs use a single
+	 * key, so this is normally once per worker per run.
+	 */
+	public Cipher encryptCipher(String encryptionKey)
+			throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+		if (cipher == null) {
+			// Using AES/ECB/PKCS5Padding is simpler for single-block encryption if key
+			// management is external
+			cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+		}
+		if (!encryptionKey.equals(cipherKey)) {
+			cipherKeySpec = new SecretKeySpec(Base64.getDecoder().decode(encryptionKey), "AES");
+			cipherKey = encryptionKey;
+		}
+		// Re-initializing also clears state left behind by a copy that failed mid-file
+		cipher.init(Cipher.ENCRYPT_MODE, cipherKeySpec);
+		return cipher;
+	}
+
+	/** Raw deflater (no zlib header) for {@link PooledGzipOutputStream}, reset. */
+	public Deflater deflater() {
+		if (deflater == null) {
+			deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		} else {
+			deflater.reset();
+		}
+		return deflater;
+	}
+
+	public CRC32 crc() {
+		crc.reset();
+		return crc;
+	}
+
+	public byte[] getDeflateBuffer() {
+		if (deflateBuffer == null) {
+			deflateBuffer = new byte[64 * 1024];
+		}
+		return deflateBuffer;
+	}
+
+	/** Lower-case hex form of a digest, using a lookup table instead of String.format. */
+	public static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			int value = bytes[i] & 0xff;
+			chars[i * 2] = HEX_DIGITS[value >>> 4];
+			chars[i * 2 + 1] = HEX_DIGITS[value & 0x0f];
+		}
+		return new String(chars);
+	}
+
+	/** Whether the copy buffer has been allocated, i.e. the context has served a streamed copy. */
+	boolean hasBuffer() {
+		return buffer != null;
+	}
+
+	/** Releases the native zlib memory held by the deflater. */
+	void close() {
+		if (deflater != null) {
+			deflater.end();
+			deflater = null;
+		}
+	}
+
+	private static MessageDigest resetDigest(Map<String, MessageDigest> digests, String algorithm)
+			throws NoSuchAlgorithmException {
+		MessageDigest digest = digests.get(algorithm);
+		if (digest == null) {
+			digest = MessageDigest.getInstance(algorithm);
+			digests.put(algorithm, digest);
+		} else {
+			digest.reset();
+		}
+		return digest;
+	}
+}
@@ -0,0 +1,39 @@
+package com.example.demo.thread;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Node-wide pool of {@link CopyContext}s. Workers borrow a context for one file
+ * and release it afterwards. At most {@code maxIdle} contexts are kept; when
+ * more files are in flight (e.g. in virtual-thread mode), extra contexts are
+ * created on demand and discarded when released.
+ */
+public class CopyContextPool {
+
+	private final int bufferSize;
+	private final BlockingQueue<CopyContext> idle;
+
+	public CopyContextPool(int bufferSize, int maxIdle) {
+		this.bufferSize = Math.max(4096, bufferSize);
+		this.idle = new ArrayBlockingQueue<>(Math.max(1, maxIdle));
+	}
+
+	public CopyContext borrow() {
+		CopyContext context = idle.poll();
+		return context != null ? context : new CopyContext(bufferSize);
+	}
+
+	public void release(CopyContext context) {
+		if (context != null && !idle.offer(context)) {
+			context.close();
+		}
+	}
+
+	public void shutdown() {
+		CopyContext context;
+		while ((context = idle.poll()) != null) {
+			context.close();
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package com.example.demo.thread;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes the copy stages of every run on this node, in one of two modes:
+ * <ul>
+ * <li><b>platform</b> - a fixed pool of platform threads.</li>
+ * <li><b>virtual</b> - one virtual thread per file, with a semaphore capping
+ * the number of files in flight; a task waits for a permit on its own virtual
+ * thread. On runtimes without virtual threads the files run on a fixed pool
+ * of {@code workerThreads} platform threads instead.</li>
+ * </ul>
+ * Each run's copy stage keeps at most {@link #getMaxWorkers()} tasks here and
+ * holds the rest in its own bounded queue, so the pool's queue stays short
+ * without pushing copies back onto the threads that submit them.
+ */
+public class CopyWorkerPool {
+
+	private static final Logger logger = LoggerFactory.getLogger(CopyWorkerPool.class);
+
+	public static final String MODE_PLATFORM = "platform";
+	public static final String MODE_VIRTUAL = "virtual";
+
+	private final ExecutorService executor;
+	private final Semaphore inFlightPermits; // Only used in virtual mode
+	private final int maxWorkers;
+	private final String mode;
+
+	private CopyWorkerPool(ExecutorService executor, Semaphore inFlightPermits, int maxWorkers, String mode) {
+		this.executor = executor;
+		this.inFlightPermits = inFlightPermits;
+		this.maxWorkers = maxWorkers;
+		this.mode = mode;
+	}
+
+	public static CopyWorkerPool platform(int workerThreads) {
+		int threads = Math.max(1, workerThreads);
+
+		AtomicInteger threadNumber = new AtomicInteger(0);
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable, "file-copy-worker-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+
+		// Unbounded, but never long: every run's copy stage keeps at most maxWorkers tasks queued here
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), threadFactory);
+
+		logger.info("Copy worker pool started in platform mode with {} threads", threads);
+		return new CopyWorkerPool(executor, null, threads, MODE_PLATFORM);
+	}
+
+	public static CopyWorkerPool virtual(int maxInFlight, int fallbackThreads) {
+		int permits = Math.max(1, maxInFlight);
+		ExecutorService executor = newVirtualThreadPerTaskExecutor(Math.max(1, fallbackThreads));
+		logger.info("Copy worker pool started in virtual mode with at most {} files in flight", permits);
+		return new CopyWorkerPool(executor, new Semaphore(permits), permits, MODE_VIRTUAL);
+	}
+
+	/** Never blocks the caller; in virtual mode the task waits for its permit on its own thread. */
+	public void execute(Runnable task) {
+		if (inFlightPermits == null) {
+			executor.execute(task);
+			return;
+		}
+
+		executor.execute(() -> {
+			// Uninterruptible: the stage that submitted the task waits for it to run
+			inFlightPermits.acquireUninterruptibly();
+			try {
+				task.run();
+			} finally {
+				inFlightPermits.release();
+			}
+		});
+	}
+
+	/** Files one run may have copying at the same time: every worker, or every in-flight permit. */
+	public int getMaxWorkers() {
+		return maxWorkers;
+	}
+
+	public String getMode() {
+		return mode;
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Looks up {@code Executors.newVirtualThreadPerTaskExecutor()} at runtime so
+	 * the project still builds for Java 17. On older runtimes the pool falls back
+	 * to {@code fallbackThreads} platform threads: the in-flight limit is sized
+	 * for virtual threads and would otherwise start thousands of OS threads.
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor(int fallbackThreads) {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			logger.warn("Virtual threads need Java 21 or later (running on {}). Falling back to {} platform threads.",
+					System.getProperty("java.version"), fallbackThreads);
+			AtomicInteger threadNumber = new AtomicInteger(0);
+			return Executors.newFixedThreadPool(fallbackThreads, runnable -> {
+				Thread thread = new Thread(runnable, "file-copy-task-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+}
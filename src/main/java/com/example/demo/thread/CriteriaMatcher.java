@@ -0,0 +1,364 @@
+package com.example.demo.thread;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Include/exclude criteria of one kind (file name or folder path), grouped by
+ * match type and compiled once, so the cost of a match grows with the length
+ * of the text rather than with the number of criteria:
+ * <ul>
+ * <li>contains literals share one Aho-Corasick automaton,</li>
+ * <li>startswith/endswith literals are hash lookups, one per distinct length,</li>
+ * <li>regexes are joined into one case-insensitive pattern, searched with find();
+ * globs are translated to anchored regexes and joined into the same pattern,</li>
+ * <li>regexes with backreferences or named groups stay separate patterns, since
+ * joining them would renumber or duplicate their groups.</li>
+ * </ul>
+ * Any matching exclude rejects the text; otherwise it must match at least one
+ * include, if there are includes. Immutable once built.
+ */
+final class CriteriaMatcher {
+
+	enum Action {
+		INCLUDE, EXCLUDE
+	}
+
+	enum MatchType {
+		STARTS_WITH, CONTAINS, ENDS_WITH, GLOB, REGEX
+	}
+
+	private static final int REGEX_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+	private static final String REGEX_META = ".^$+{[]|()";
+	private static final String GLOB_META = "\\*?[{";
+
+	static final CriteriaMatcher EMPTY = new Builder().build();
+
+	private final Group includes;
+	private final Group excludes;
+
+	private CriteriaMatcher(Group includes, Group excludes) {
+		this.includes = includes;
+		this.excludes = excludes;
+	}
+
+	boolean isEmpty() {
+		return includes.isEmpty() && excludes.isEmpty();
+	}
+
+	/**
+	 * @param literalText lower-cased text for startswith/contains/endswith
+	 * @param patternText lower-cased text for glob and regex
+	 */
+	boolean matches(String literalText, String patternText) {
+		if (excludes.anyMatch(literalText, patternText)) {
+			return false;
+		}
+		return includes.isEmpty() || includes.anyMatch(literalText, patternText);
+	}
+
+	/** Same rule for a path without a parent: only literal "/" or "\" criteria match it. */
+	boolean matchesRoot() {
+		if (excludes.rootMatch) {
+			return false;
+		}
+		return includes.isEmpty() || includes.rootMatch;
+	}
+
+	@Override
+	public String toString() {
+		return "include" + includes + " exclude" + excludes;
+	}
+
+	static final class Builder {
+		private final Group.Builder includes = new Group.Builder();
+		private final Group.Builder excludes = new Group.Builder();
+
+		/**
+		 * @param value lower-cased, except for regexes, which are matched ignoring case
+		 * @throws IllegalArgumentException if a glob or regex is invalid
+		 */
+		Builder add(Action action, MatchType matchType, String value) {
+			(action == Action.INCLUDE ? includes : excludes).add(matchType, value);
+			return this;
+		}
+
+		CriteriaMatcher build() {
+			return new CriteriaMatcher(includes.build(), excludes.build());
+		}
+	}
+
+	private static final class Group {
+		private final AhoCorasick contains; // null when there are no contains literals
+		private final Set<String> prefixes;
+		private final int[] prefixLengths;
+		private final Set<String> suffixes;
+		private final int[] suffixLengths;
+		private final Pattern regex; // null when there are no joinable regexes or globs
+		private final List<Pattern> separateRegexes;
+		private final boolean rootMatch;
+		private final String summary;
+
+		private Group(Builder builder) {
+			this.contains = builder.contains.isEmpty() ? null : new AhoCorasick(builder.contains);
+			this.prefixes = Set.copyOf(builder.prefixes);
+			this.prefixLengths = lengths(builder.prefixes);
+			this.suffixes = Set.copyOf(builder.suffixes);
+			this.suffixLengths = lengths(builder.suffixes);
+			this.regex = builder.patterns.isEmpty() ? null
+					: Pattern.compile(String.join("|", builder.patterns), REGEX_FLAGS);
+			this.separateRegexes = List.copyOf(builder.separateRegexes);
+			this.rootMatch = builder.rootMatch;
+			this.summary = "[contains=" + builder.contains.size() + ", startswith=" + prefixes.size() + ", endswith="
+					+ suffixes.size() + ", glob=" + builder.globCount + ", regex=" + builder.regexCount + "]";
+		}
+
+		private boolean isEmpty() {
+			return contains == null && prefixes.isEmpty() && suffixes.isEmpty() && regex == null
+					&& separateRegexes.isEmpty();
+		}
+
+		private boolean anyMatch(String literalText, String patternText) {
+			if (contains != null && contains.containsAny(literalText)) {
+				return true;
+			}
+			for (int length : prefixLengths) {
+				if (length <= literalText.length() && prefixes.contains(literalText.substring(0, length))) {
+					return true;
+				}
+			}
+			for (int length : suffixLengths) {
+				if (length <= literalText.length()
+						&& suffixes.contains(literalText.substring(literalText.length() - length))) {
+					return true;
+				}
+			}
+			if (regex != null && regex.matcher(patternText).find()) {
+				return true;
+			}
+			for (Pattern separate : separateRegexes) {
+				if (separate.matcher(patternText).find()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static int[] lengths(Set<String> literals) {
+			Set<Integer> lengths = new TreeSet<>();
+			for (String literal : literals) {
+				lengths.add(literal.length());
+			}
+			return lengths.stream().mapToInt(Integer::intValue).toArray();
+		}
+
+		@Override
+		public String toString() {
+			return summary;
+		}
+
+		private static final class Builder {
+			private final Set<String> contains = new HashSet<>();
+			private final Set<String> prefixes = new HashSet<>();
+			private final Set<String> suffixes = new HashSet<>();
+			private final List<String> patterns = new ArrayList<>(); // Joined into one Pattern
+			private final List<Pattern> separateRegexes = new ArrayList<>();
+			private int globCount;
+			private int regexCount;
+			private boolean rootMatch;
+
+			private void add(MatchType matchType, String value) {
+				switch (matchType) {
+				case STARTS_WITH:
+					prefixes.add(value);
+					break;
+				case ENDS_WITH:
+					suffixes.add(value);
+					break;
+				case GLOB:
+					// Anchored at both ends: a glob must match the whole text
+					patterns.add("^(?:" + globToRegex(value) + ")\\z");
+					globCount++;
+					break;
+				case REGEX:
+					// Compiled on its own first, so an invalid regex is rejected before it is joined
+					Pattern compiled = Pattern.compile(value, REGEX_FLAGS);
+					if (hasBackreferencesOrNamedGroups(value)) {
+						separateRegexes.add(compiled);
+					} else {
+						patterns.add("(?:" + value + ")");
+					}
+					regexCount++;
+					break;
+				default:
+					contains.add(value);
+					break;
+				}
+				if (matchType != MatchType.GLOB && matchType != MatchType.REGEX) {
+					rootMatch |= "/".equals(value) || "\\".equals(value);
+				}
+			}
+
+			private Group build() {
+				return new Group(this);
+			}
+		}
+	}
+
+	/**
+	 * Whether joining {@code regex} with others would change its meaning: a
+	 * backreference ({@code \1}, {@code \k<name>}) would point at another
+	 * regex's group once the groups are renumbered, and a named group could
+	 * clash with one of the same name.
+	 */
+	private static boolean hasBackreferencesOrNamedGroups(String regex) {
+		for (int i = 0; i < regex.length() - 1; i++) {
+			char c = regex.charAt(i);
+			char next = regex.charAt(i + 1);
+			if (c == '\\') {
+				if ((next >= '1' && next <= '9') || next == 'k') {
+					return true;
+				}
+				i++; // Skips the escaped character, so an escaped \( is not read as a group
+			} else if (c == '(' && regex.startsWith("?<", i + 1) && i + 3 < regex.length()
+					&& Character.isLetter(regex.charAt(i + 3))) {
+				return true; // (?<name>...), but not the lookbehinds (?<= and (?<!
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Translates a glob to the regex the default file system's "glob:" path
+	 * matcher uses: {@code *} and {@code ?} stay within one path element,
+	 * {@code **} crosses elements, {@code [...]} and {@code {a,b}} as usual.
+	 *
+	 * @throws PatternSyntaxException if the glob is invalid
+	 */
+	private static String globToRegex(String glob) {
+		StringBuilder regex = new StringBuilder();
+		boolean inGroup = false;
+		int i = 0;
+		while (i < glob.length()) {
+			char c = glob.charAt(i++);
+			switch (c) {
+			case '\\':
+				if (i == glob.length()) {
+					throw new PatternSyntaxException("No character to escape", glob, i - 1);
+				}
+				char escaped = glob.charAt(i++);
+				if (GLOB_META.indexOf(escaped) >= 0 || REGEX_META.indexOf(escaped) >= 0) {
+					regex.append('\\');
+				}
+				regex.append(escaped);
+				break;
+			case '/':
+				regex.append(c);
+				break;
+			case '[':
+				i = appendBracket(glob, i, regex);
+				break;
+			case '{':
+				if (inGroup) {
+					throw new PatternSyntaxException("Cannot nest groups", glob, i - 1);
+				}
+				regex.append("(?:(?:");
+				inGroup = true;
+				break;
+			case '}':
+				if (inGroup) {
+					regex.append("))");
+					inGroup = false;
+				} else {
+					regex.append('}');
+				}
+				break;
+			case ',':
+				regex.append(inGroup ? ")|(?:" : ",");
+				break;
+			case '*':
+				if (i < glob.length() && glob.charAt(i) == '*') {
+					regex.append(".*");
+					i++;
+				} else {
+					regex.append("[^/]*");
+				}
+				break;
+			case '?':
+				regex.append("[^/]");
+				break;
+			default:
+				if (REGEX_META.indexOf(c) >= 0) {
+					regex.append('\\');
+				}
+				regex.append(c);
+				break;
+			}
+		}
+		if (inGroup) {
+			throw new PatternSyntaxException("Missing '}'", glob, i - 1);
+		}
+		return regex.toString();
+	}
+
+	/** Appends the bracket expression that starts after the '[' at {@code i - 1}; returns the index after its ']'. */
+	private static int appendBracket(String glob, int i, StringBuilder regex) {
+		regex.append("[[^/]&&[");
+		if (i < glob.length() && glob.charAt(i) == '^') {
+			regex.append("\\^");
+			i++;
+		} else {
+			if (i < glob.length() && glob.charAt(i) == '!') {
+				regex.append('^');
+				i++;
+			}
+			if (i < glob.length() && glob.charAt(i) == '-') {
+				regex.append('-');
+				i++;
+			}
+		}
+		boolean hasRangeStart = false;
+		char last = 0;
+		while (i < glob.length()) {
+			char c = glob.charAt(i++);
+			if (c == ']') {
+				regex.append("]]");
+				return i;
+			}
+			if (c == '/') {
+				throw new PatternSyntaxException("Explicit 'name separator' in class", glob, i - 1);
+			}
+			if (c == '\\' || c == '[' || (c == '&' && i < glob.length() && glob.charAt(i) == '&')) {
+				regex.append('\\');
+			}
+			regex.append(c);
+			if (c == '-') {
+				if (!hasRangeStart) {
+					throw new PatternSyntaxException("Invalid range", glob, i - 1);
+				}
+				if (i == glob.length()) {
+					break;
+				}
+				char end = glob.charAt(i++);
+				if (end == ']') {
+					regex.append("]]");
+					return i;
+				}
+				if (end < last) {
+					throw new PatternSyntaxException("Invalid range", glob, i - 3);
+				}
+				regex.append(end);
+				hasRangeStart = false;
+			} else {
+				hasRangeStart = true;
+				last = c;
+			}
+		}
+		throw new PatternSyntaxException("Missing ']'", glob, i - 1);
+	}
+}
@@ -0,0 +1,41 @@
+package com.example.demo.thread;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+
+/**
+ * Sits directly on top of the destination file stream and hashes and counts
+ * the bytes that are actually written to disk, i.e. after compression and
+ * encryption. This gives a target-side checksum without reading the
+ * destination back.
+ */
+public class DigestingOutputStream extends FilterOutputStream {
+
+	private final MessageDigest digest;
+	private long bytesWritten = 0;
+
+	public DigestingOutputStream(OutputStream out, MessageDigest digest) {
+		super(out);
+		this.digest = digest;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		digest.update((byte) b);
+		bytesWritten++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		digest.update(b, off, len);
+		bytesWritten += len;
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+}
@@ -0,0 +1,196 @@
+package com.example.demo.thread;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lists source trees on a work-stealing pool shared by every run on this node.
+ * Each directory is one task: it streams its entries, hands files to the run
+ * as they are found and forks a task per subdirectory, so sibling subtrees are
+ * listed at the same time and idle scan threads steal pending directories from
+ * busy ones. On network file systems, where listing is mostly waiting for the
+ * server, this keeps several requests outstanding.
+ *
+ * Tasks never wait for their subdirectories (they are {@link CountedCompleter}s),
+ * so the depth of the tree does not grow any thread's stack. Symbolic links are
+ * followed; a directory that is one of its own ancestors is reported and
+ * skipped.
+ */
+public class DirectoryScanner {
+
+	private static final Logger logger = LoggerFactory.getLogger(DirectoryScanner.class);
+
+	private final ForkJoinPool scanPool;
+
+	public DirectoryScanner(int parallelism) {
+		AtomicInteger threadNumber = new AtomicInteger(0);
+		this.scanPool = new ForkJoinPool(Math.max(1, parallelism), pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("file-scan-worker-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}, null, false);
+		logger.info("Directory scan pool started with parallelism {}", scanPool.getParallelism());
+	}
+
+	/**
+	 * Walks the tree under {@code root} and returns once every directory has been
+	 * listed. {@code fileSink} is called for each file, from several scan threads
+	 * at once, with the attributes read while listing. The pool is shared by all
+	 * runs, so a sink that waits must do so through
+	 * {@link ForkJoinPool#managedBlock}, as {@link PipelineStage#submit} does;
+	 * a plain blocking call would hold a scan thread that other runs need.
+	 */
+	public void scan(Path root, FilterPlan filterPlan, Consumer<FileSnapshot> fileSink) {
+		BasicFileAttributes attrs;
+		try {
+			attrs = Files.readAttributes(root, BasicFileAttributes.class);
+		} catch (IOException e) {
+			logger.error("Traversal of {} stopped: {}", root, e.getMessage());
+			return;
+		}
+		if (!attrs.isDirectory()) {
+			fileSink.accept(FileSnapshot.of(root.toFile(), attrs));
+			return;
+		}
+		Ancestor rootAncestor = new Ancestor(root, attrs.fileKey(), null);
+		scanPool.invoke(new DirectoryTask(null, root, rootAncestor, filterPlan, fileSink));
+	}
+
+	public void shutdown() {
+		scanPool.shutdownNow();
+		try {
+			scanPool.awaitTermination(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** The directories above a task's directory, used to detect link loops. */
+	private static final class Ancestor {
+		private final Path path;
+		private final Object fileKey; // null where the file system has none
+		private final Ancestor parent;
+
+		private Ancestor(Path path, Object fileKey, Ancestor parent) {
+			this.path = path;
+			this.fileKey = fileKey;
+			this.parent = parent;
+		}
+
+		private boolean contains(Path dir, Object dirKey) {
+			for (Ancestor ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+				if (dirKey != null && ancestor.fileKey != null) {
+					if (dirKey.equals(ancestor.fileKey)) {
+						return true;
+					}
+				} else if (isSameFile(dir, ancestor.path)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static boolean isSameFile(Path a, Path b) {
+			try {
+				return Files.isSameFile(a, b);
+			} catch (IOException e) {
+				return Objects.equals(a, b);
+			}
+		}
+	}
+
+	private static final class DirectoryTask extends CountedCompleter<Void> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient Path dir;
+		private final transient Ancestor ancestors; // Includes dir
+		private final transient FilterPlan filterPlan;
+		private final transient Consumer<FileSnapshot> fileSink;
+
+		private DirectoryTask(DirectoryTask parent, Path dir, Ancestor ancestors, FilterPlan filterPlan,
+				Consumer<FileSnapshot> fileSink) {
+			super(parent);
+			this.dir = dir;
+			this.ancestors = ancestors;
+			this.filterPlan = filterPlan;
+			this.fileSink = fileSink;
+		}
+
+		@Override
+		public void compute() {
+			try {
+				listDirectory();
+			} catch (RuntimeException e) {
+				// A failed file hand-off must not leave the scan waiting for this task
+				logger.error("Listing of {} failed: {}", dir, e.getMessage(), e);
+			}
+			tryComplete();
+		}
+
+		private void listDirectory() {
+			// Apply folder path filters only to directories
+			if (!filterPlan.acceptsDirectory(dir.toFile())) {
+				logger.info("Skipping directory due to filter criteria: {}", dir);
+				return;
+			}
+			try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+				for (Path entry : entries) {
+					visit(entry);
+				}
+			} catch (IOException | DirectoryIteratorException e) {
+				logger.warn("Listing of {} ended early: {}", dir, e.getMessage());
+			}
+		}
+
+		private void visit(Path entry) {
+			FileSnapshot snapshot = FileSnapshot.of(entry.toFile());
+			// The name filters cost no I/O; an entry they reject is only stat'ed if it may be a directory to enter
+			boolean nameAccepted = filterPlan.acceptsName(snapshot);
+			if (!nameAccepted && !filterPlan.mayEnter(snapshot.getFile())) {
+				return;
+			}
+			BasicFileAttributes attrs;
+			try {
+				attrs = snapshot.attributes();
+			} catch (IOException e) {
+				if (Files.isSymbolicLink(entry)) {
+					logger.warn("Skipping broken symbolic link: {}", entry);
+				} else {
+					logger.warn("Cannot read {}, skipping it: {}", entry, e.getMessage());
+				}
+				return;
+			}
+
+			if (!attrs.isDirectory()) {
+				if (nameAccepted) {
+					fileSink.accept(snapshot);
+				}
+				return;
+			}
+			// Only a followed link can lead back to an ancestor
+			if (Files.isSymbolicLink(entry) && ancestors.contains(entry, attrs.fileKey())) {
+				logger.warn("Skipping symbolic link loop at {}", entry);
+				return;
+			}
+			addToPendingCount(1);
+			new DirectoryTask(this, entry, new Ancestor(entry, attrs.fileKey(), ancestors), filterPlan, fileSink)
+					.fork();
+		}
+	}
+}
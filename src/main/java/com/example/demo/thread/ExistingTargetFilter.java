@@ -0,0 +1,106 @@
+package com.example.demo.thread;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Bloom filter over the (targetPath, targetFileName) pairs that already have
+ * {@code file_meta_data} rows under one destination root. Loaded once per run
+ * with {@code runCheckDuplicate=Y}, so a file whose target has never been
+ * written costs a few bit lookups instead of a query.
+ *
+ * A negative answer is exact; a positive one may be false (about 1% of new
+ * targets) and is settled by the database. Keys are lower-cased because MySQL's
+ * default collation compares them case-insensitively.
+ */
+public class ExistingTargetFilter {
+
+	private static final Logger logger = LoggerFactory.getLogger(ExistingTargetFilter.class);
+
+	private static final int BITS_PER_KEY = 10;
+	private static final int HASH_FUNCTIONS = 7;
+
+	private static final String WHERE_SQL = " FROM file_meta_data WHERE (target_path = ? OR target_path LIKE ?)";
+
+	private final long[] bits;
+	private final long bitCount;
+
+	private ExistingTargetFilter(long expectedKeys) {
+		long requestedBits = Math.max(1024, expectedKeys * BITS_PER_KEY);
+		this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (requestedBits + 63) / 64)];
+		this.bitCount = bits.length * 64L;
+	}
+
+	public static ExistingTargetFilter load(JdbcTemplate jdbcTemplate, File destinationRoot) {
+		long start = System.currentTimeMillis();
+		String rootPath = destinationRoot.getAbsolutePath();
+		String prefix = ArchivedFileIndex.likePrefix(destinationRoot);
+
+		Long rowCount = jdbcTemplate.queryForObject("SELECT COUNT(*)" + WHERE_SQL, Long.class, rootPath, prefix);
+		ExistingTargetFilter filter = new ExistingTargetFilter(rowCount != null ? rowCount : 0);
+
+		jdbcTemplate.query(connection -> {
+			PreparedStatement statement = connection.prepareStatement("SELECT target_path, target_file_name" + WHERE_SQL);
+			// Lets MySQL Connector/J stream the rows instead of buffering the whole result
+			statement.setFetchSize(Integer.MIN_VALUE);
+			statement.setString(1, rootPath);
+			statement.setString(2, prefix);
+			return statement;
+		}, rs -> {
+			filter.add(rs.getString(1), rs.getString(2));
+		});
+
+		logger.info("Loaded {} existing target rows under {} for duplicate checks in {} ms ({} KB)", rowCount,
+				destinationRoot.getAbsolutePath(), System.currentTimeMillis() - start, filter.bits.length / 128);
+		return filter;
+	}
+
+	public boolean mightContain(String targetPath, String targetFileName) {
+		long hash = hash(targetPath, targetFileName);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= HASH_FUNCTIONS; i++) {
+			long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+			if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void add(String targetPath, String targetFileName) {
+		if (targetPath == null || targetFileName == null) {
+			return;
+		}
+		long hash = hash(targetPath, targetFileName);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= HASH_FUNCTIONS; i++) {
+			long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+			bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	private static long hash(String targetPath, String targetFileName) {
+		long hash = 1125899906842597L;
+		hash = mix(hash, targetPath.toLowerCase(Locale.ROOT));
+		hash = 31 * hash; // Separator, so ("a/b", "c") and ("a", "b/c") differ
+		hash = mix(hash, targetFileName.toLowerCase(Locale.ROOT));
+		// SplitMix64 finalizer spreads the polynomial hash over all 64 bits
+		hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+		return hash ^ (hash >>> 31);
+	}
+
+	private static long mix(long hash, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			hash = 31 * hash + value.charAt(i);
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,79 @@
+package com.example.demo.thread;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * Copies files that need no transformation with {@link FileChannel#transferTo},
+ * which lets the kernel move the bytes (sendfile / copy_file_range on Linux)
+ * instead of pulling them through a Java buffer.
+ *
+ * The checksum is computed from a memory-mapped view of the source, one window
+ * at a time. Each window is hashed right before it is transferred, so the
+ * transfer reads pages that the digest has just brought into the page cache.
+ */
+public class FileChannelCopier {
+
+	// Size of each memory-mapped window of the source
+	private static final long MAP_WINDOW_SIZE = 64L * 1024 * 1024;
+
+	private FileChannelCopier() {
+	}
+
+	/**
+	 * Feeds every byte of {@code source} into {@code digest} without copying it.
+	 *
+	 * @return the number of bytes digested
+	 */
+	public static long digest(Path source, MessageDigest digest) throws IOException {
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+			long size = in.size();
+			for (long position = 0; position < size; position += MAP_WINDOW_SIZE) {
+				digest.update(in.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW_SIZE, size - position)));
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * Copies {@code source} to {@code target}, replacing the target, and feeds
+	 * every source byte into {@code digest}. An existing target is deleted rather
+	 * than truncated: it may be a hardlink to a content-store object, whose bytes
+	 * must not change.
+	 *
+	 * @return the number of bytes transferred to the target
+	 */
+	public static long copy(Path source, Path target, MessageDigest digest) throws IOException {
+		Files.deleteIfExists(target);
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+
+			long size = in.size();
+			long position = 0;
+			long transferred = 0;
+			while (position < size) {
+				long windowSize = Math.min(MAP_WINDOW_SIZE, size - position);
+
+				MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+				digest.update(window);
+
+				long windowEnd = position + windowSize;
+				while (position < windowEnd) {
+					long count = in.transferTo(position, windowEnd - position, out);
+					if (count <= 0) {
+						// Source shrank while copying; stop and let the caller detect it
+						return transferred;
+					}
+					position += count;
+					transferred += count;
+				}
+			}
+			return transferred;
+		}
+	}
+}
@@ -1,36 +1,33 @@
 package com.example.demo.thread;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.nio.file.attribute.FileOwnerAttributeView;
-import java.nio.file.attribute.UserPrincipal;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.Base64;
-import java.util.Collections;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.zip.GZIPOutputStream;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherOutputStream;
 import javax.crypto.NoSuchPaddingException;
-import javax.crypto.spec.SecretKeySpec;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,315 +40,625 @@ public class FileDetailsUpdate implements Runnable {
 
 	private static final Logger logger = LoggerFactory.getLogger(FileDetailsUpdate.class);
 
+	// validation_status of a kernel-side copy: every byte arrived, but no digest of the target exists
+	private static final String SIZE_VERIFIED = "SIZE_VERIFIED";
+
 	private File sourceFile;
+	private FileSnapshot snapshot; // Attributes and owner of sourceFile, read at most once
 	private File destinationBase;
 	private File sourceRootPath;
 	private FileDetailsStore fileDetailsStore;
+	private MetadataBatchWriter metadataWriter;
 	private BigDecimal runId;
-	private AtomicInteger fileCounter;
+	private RunContext runContext;
 	private String activity;
 	private FileFilters filters;
 	private String encryptionKey;
-
-	public FileDetailsUpdate(File sourceFile, File destinationRootPath, File sourceRootPath,
-			FileDetailsStore fileDetailsStore, BigDecimal runId, AtomicInteger fileCounter, String activity,
-			FileFilters filters, String encryptionKey) {
-		this.sourceFile = sourceFile;
-		this.destinationBase = destinationRootPath; // Store the absolute root target path
-		this.sourceRootPath = sourceRootPath;
-		this.fileDetailsStore = fileDetailsStore;
-		this.runId = runId;
-		this.fileCounter = fileCounter;
-		this.activity = activity;
-		this.filters = filters;
-		this.encryptionKey = encryptionKey;
+	private RunResultSink resultSink;
+	private CopyContextPool copyContextPool;
+	private ChunkedFileCopier chunkedFileCopier;
+	private ArchivedFileIndex archivedFileIndex; // Set for incremental runs
+	private ContentStore contentStore; // Set for deduplicating runs
+	private ExistingTargetFilter existingTargetFilter; // Set for runCheckDuplicate runs
+	private boolean sameFileStore; // copyandpurge may rename instead of copying
+	private CopyContext copyContext; // Borrowed for the duration of a copy
+
+	// Handed from the transfer step to the persist step
+	private Map<String, Object> metadata;
+	private String validationStatus = "N";
+	private File renameTarget; // Set when copyandpurge renames the source in persist() instead of copying
+	private String checksumAlgorithm;
+	private boolean movedToDestination;
+	private boolean contentWritten; // The copy ran to the end without an error
+
+	public FileDetailsUpdate(File sourceFile, RunContext runContext) {
+		this(FileSnapshot.of(sourceFile), runContext);
 	}
 
-	private static final List<Map<String, Object>> metadataList = new CopyOnWriteArrayList<>();
+	public FileDetailsUpdate(FileSnapshot snapshot, RunContext runContext) {
+		this.sourceFile = snapshot.getFile();
+		this.snapshot = snapshot;
+		this.destinationBase = runContext.getDestinationRootPath(); // Store the absolute root target path
+		this.sourceRootPath = runContext.getSourceRootPath();
+		this.fileDetailsStore = runContext.getFileDetailsStore();
+		this.metadataWriter = runContext.getMetadataWriter();
+		this.runId = runContext.getRunId();
+		this.runContext = runContext;
+		this.activity = runContext.getActivity();
+		this.filters = runContext.getFilters();
+		this.encryptionKey = runContext.getEncryptionKey();
+		this.resultSink = runContext.getResultSink();
+		this.copyContextPool = runContext.getCopyContextPool();
+		this.chunkedFileCopier = runContext.getChunkedFileCopier();
+		this.archivedFileIndex = runContext.getArchivedFileIndex();
+		this.contentStore = runContext.getContentStore();
+		this.existingTargetFilter = runContext.getExistingTargetFilter();
+		this.sameFileStore = runContext.isSameFileStore();
+	}
 
+	/** Runs both steps on the calling thread. */
 	@Override
 	public void run() {
+		if (transfer()) {
+			persist();
+		}
+	}
+
+	/**
+	 * First step, run by the run's copy stage, or its transform stage when the
+	 * run compresses or encrypts: works out the target, keeps an older version
+	 * of it and writes and verifies the content. The outcome stays in this task
+	 * for {@link #persist()}.
+	 *
+	 * @return false when the file is done and has nothing to persist
+	 */
+	public boolean transfer() {
 
 //			if (sourceFile.getName().equalsIgnoreCase("failtest.txt")) {
 //	            throw new InterruptedException("Intentional exception for testing thread propagation!");
 //	        }
-		// Use the FileFilterUtility for all filtering logic
-		if (FileFilterUtility.validateFile(sourceFile, filters)) {
-			// Determine the final destination path based on the includeSourcePath flag
+		// Files reach this task only after passing the run's filter stage
+
+		// Before anything touches the destination, so an unchanged file costs no stat or mkdirs there
+		if (archivedFileIndex != null
+				&& ("copy".equalsIgnoreCase(activity) || "copyandpurge".equalsIgnoreCase(activity))
+				&& isUnchangedSinceArchived()) {
+			logger.info("Skipping file unchanged since it was last archived: {}", sourceFile.getAbsolutePath());
+			resultSink.addUnchanged();
+			return false;
+		}
 
-			File finalDestinationFile = null;
-			if (destinationBase != null) {
-				finalDestinationFile = constructDestinationPath();
+		// Determine the final destination path based on the includeSourcePath flag
+		File finalDestinationFile = null;
+		if (destinationBase != null) {
+			finalDestinationFile = constructDestinationPath();
 
-				// Ensure parent directories exist for the final file
-				if (finalDestinationFile.getParentFile() != null && !finalDestinationFile.getParentFile().exists()) {
-					finalDestinationFile.getParentFile().mkdirs();
-				}
+			// Ensure parent directories exist for the final file
+			if (finalDestinationFile.getParentFile() != null && !finalDestinationFile.getParentFile().exists()) {
+				finalDestinationFile.getParentFile().mkdirs();
 			}
+		}
 
-			if ("copy".equalsIgnoreCase(activity) || "copyandpurge".equalsIgnoreCase(activity)) {
+		if ("copy".equalsIgnoreCase(activity) || "copyandpurge".equalsIgnoreCase(activity)) {
 
-				String sourceChecksum = null;
-				String targetChecksum = null;
-				String validationStatus = "N";
+			String sourceChecksum = null;
+			String targetChecksum = null;
 
-				MessageDigest sourceMd = null;
-				MessageDigest targetMd = null;
+			Long chunkSize = null; // Set when the checksum is combined from range digests
+			String contentRef = null; // Content-store object holding the target's bytes
 
-				String defaultAlgorithm = "SHA-256";
-				if (filters != null && filters.getFileValidation() != null) {
-					String requestedAlgorithm = filters.getFileValidation().toUpperCase();
-					if (requestedAlgorithm.equals("SHA-256") || requestedAlgorithm.equals("MD5")
-							|| requestedAlgorithm.equals("SHA1")) {
-						defaultAlgorithm = requestedAlgorithm;
-					}
+			String defaultAlgorithm = "SHA-256";
+			if (filters != null && filters.getFileValidation() != null) {
+				String requestedAlgorithm = filters.getFileValidation().toUpperCase();
+				if (requestedAlgorithm.equals("SHA-256") || requestedAlgorithm.equals("MD5")
+						|| requestedAlgorithm.equals("SHA1")) {
+					defaultAlgorithm = requestedAlgorithm;
 				}
+			}
+
+			String isVersionEnabledStatus = "n";
+			String encryptionStatus = (filters != null && "y".equalsIgnoreCase(filters.getFileEncryption())) ? "y"
+					: "n";
+			String compressionStatus = (filters != null && "y".equalsIgnoreCase(filters.getFileCompression())) ? "y"
+					: "n";
+
+			// Determine the base file name with potential extensions for
+			// encryption/compression
+			// Start with the name of the determined finalDestinationFile
+			StringBuilder effectiveFileNameBuilder = new StringBuilder(finalDestinationFile.getName());
+
+			// Append .enc and .gz extensions only if not already present and enabled
+			if ("y".equalsIgnoreCase(encryptionStatus)
+					&& !effectiveFileNameBuilder.toString().toLowerCase().endsWith(".enc")) {
+				effectiveFileNameBuilder.append(".enc");
+			}
+			if ("y".equalsIgnoreCase(compressionStatus)
+					&& !effectiveFileNameBuilder.toString().toLowerCase().endsWith(".gz")) {
+				effectiveFileNameBuilder.append(".gz");
+			}
+			// Construct the final file path with extensions in its parent directory
+			File finalDestinationFileWithExtensions = new File(finalDestinationFile.getParentFile(),
+					effectiveFileNameBuilder.toString());
+
+//			System.out.println("Determined final destination file path (with extensions): "
+//					+ finalDestinationFileWithExtensions.getAbsolutePath());
+			logger.info("Determined final destination file path (with extensions): {}",
+					finalDestinationFileWithExtensions.getAbsolutePath());
+
+			// Check if versioning is enabled
+			if (filters != null && "y".equalsIgnoreCase(filters.getVersionEnable())) {
+				// A target with a chunk checkpoint is an interrupted copy that will be resumed,
+				// not an older version
+				if (finalDestinationFileWithExtensions.exists()
+						&& !ChunkCheckpoint.exists(finalDestinationFileWithExtensions.toPath())) {
+					String fileName = finalDestinationFileWithExtensions.getName();
+					String nameWithoutExtension;
+					String extension = "";
+					int dotIndex = fileName.lastIndexOf('.');
+					if (dotIndex > 0 && dotIndex < fileName.length() - 1) {
+						nameWithoutExtension = fileName.substring(0, dotIndex);
+						extension = fileName.substring(dotIndex); // Includes the dot
+					} else {
+						nameWithoutExtension = fileName;
+						extension = "";
+					}
 
-				String isVersionEnabledStatus = "n";
-				String encryptionStatus = (filters != null && "y".equalsIgnoreCase(filters.getFileEncryption())) ? "y"
-						: "n";
-				String compressionStatus = (filters != null && "y".equalsIgnoreCase(filters.getFileCompression())) ? "y"
-						: "n";
-
-				// Determine the base file name with potential extensions for
-				// encryption/compression
-				// Start with the name of the determined finalDestinationFile
-				StringBuilder effectiveFileNameBuilder = new StringBuilder(finalDestinationFile.getName());
-
-				// Append .enc and .gz extensions only if not already present and enabled
-				if ("y".equalsIgnoreCase(encryptionStatus)
-						&& !effectiveFileNameBuilder.toString().toLowerCase().endsWith(".enc")) {
-					effectiveFileNameBuilder.append(".enc");
+					LocalDateTime existingFileModifiedTime = LocalDateTime.ofInstant(
+							finalDestinationFileWithExtensions.lastModified() > 0
+									? new java.util.Date(finalDestinationFileWithExtensions.lastModified())
+											.toInstant()
+									: LocalDateTime.now().atZone(ZoneId.systemDefault()).toInstant(), // Fallback
+							ZoneId.systemDefault());
+					String timestamp = existingFileModifiedTime
+							.format(DateTimeFormatter.ofPattern("_yyyyMMdd_HHmmss"));
+					String oldFileName = nameWithoutExtension + timestamp + extension;
+					File oldFile = new File(finalDestinationFileWithExtensions.getParent(), oldFileName);
+
+//					System.out.println("Attempting to rename existing file '"
+//							+ finalDestinationFileWithExtensions.getAbsolutePath() + "' to '"
+//							+ oldFile.getAbsolutePath() + "' for versioning.");
+					logger.info("Attempting to rename existing file '{}' to '{}' for versioning.",
+							finalDestinationFileWithExtensions.getAbsolutePath(), oldFile.getAbsolutePath());
+
+					if (finalDestinationFileWithExtensions.renameTo(oldFile)) {
+//						System.out.println("Existing file renamed for versioning: " + oldFile.getName());
+						logger.info("Existing file renamed for versioning: {}", oldFile.getName());
+					} else {
+//						System.err.println("Failed to rename existing file for versioning: "
+//								+ finalDestinationFileWithExtensions.getAbsolutePath());
+						logger.error("Failed to rename existing file for versioning: {}",
+								finalDestinationFileWithExtensions.getAbsolutePath());
+					}
 				}
-				if ("y".equalsIgnoreCase(compressionStatus)
-						&& !effectiveFileNameBuilder.toString().toLowerCase().endsWith(".gz")) {
-					effectiveFileNameBuilder.append(".gz");
+				isVersionEnabledStatus = "y";
+				System.out.println("Versioning enabled: New file will be saved with its original name.");
+			}
+
+			String isArchived = "N";
+			metadata = buildMetadata1(finalDestinationFileWithExtensions);
+			copyContext = copyContextPool.borrow();
+			try {
+				long expectedSize = snapshot.size();
+				WrittenContent written = null;
+				if (sameFileStore && "copyandpurge".equalsIgnoreCase(activity) && contentStore == null
+						&& !"y".equalsIgnoreCase(encryptionStatus) && !"y".equalsIgnoreCase(compressionStatus)) {
+					// Renamed by persist() once older rows of the target are gone; only hashed here
+					written = hashForRename(defaultAlgorithm, expectedSize);
+					renameTarget = finalDestinationFileWithExtensions;
+					checksumAlgorithm = defaultAlgorithm;
+				} else if (contentStore != null && !"y".equalsIgnoreCase(encryptionStatus)) {
+					written = storeContent(finalDestinationFileWithExtensions, defaultAlgorithm, compressionStatus,
+							expectedSize);
+					contentRef = written.contentRef;
+				} else {
+					written = writeContent(finalDestinationFileWithExtensions, defaultAlgorithm, encryptionStatus,
+							compressionStatus, expectedSize, true);
 				}
-				// Construct the final file path with extensions in its parent directory
-				File finalDestinationFileWithExtensions = new File(finalDestinationFile.getParentFile(),
-						effectiveFileNameBuilder.toString());
-
-//				System.out.println("Determined final destination file path (with extensions): "
-//						+ finalDestinationFileWithExtensions.getAbsolutePath());
-				logger.info("Determined final destination file path (with extensions): {}",
-						finalDestinationFileWithExtensions.getAbsolutePath());
-
-				// Check if versioning is enabled
-				if (filters != null && "y".equalsIgnoreCase(filters.getVersionEnable())) {
-					if (finalDestinationFileWithExtensions.exists()) {
-						String fileName = finalDestinationFileWithExtensions.getName();
-						String nameWithoutExtension;
-						String extension = "";
-						int dotIndex = fileName.lastIndexOf('.');
-						if (dotIndex > 0 && dotIndex < fileName.length() - 1) {
-							nameWithoutExtension = fileName.substring(0, dotIndex);
-							extension = fileName.substring(dotIndex); // Includes the dot
-						} else {
-							nameWithoutExtension = fileName;
-							extension = "";
-						}
-
-						LocalDateTime existingFileModifiedTime = LocalDateTime.ofInstant(
-								finalDestinationFileWithExtensions.lastModified() > 0
-										? new java.util.Date(finalDestinationFileWithExtensions.lastModified())
-												.toInstant()
-										: LocalDateTime.now().atZone(ZoneId.systemDefault()).toInstant(), // Fallback
-								ZoneId.systemDefault());
-						String timestamp = existingFileModifiedTime
-								.format(DateTimeFormatter.ofPattern("_yyyyMMdd_HHmmss"));
-						String oldFileName = nameWithoutExtension + timestamp + extension;
-						File oldFile = new File(finalDestinationFileWithExtensions.getParent(), oldFileName);
-
-//						System.out.println("Attempting to rename existing file '"
-//								+ finalDestinationFileWithExtensions.getAbsolutePath() + "' to '"
-//								+ oldFile.getAbsolutePath() + "' for versioning.");
-						logger.info("Attempting to rename existing file '{}' to '{}' for versioning.",
-								finalDestinationFileWithExtensions.getAbsolutePath(), oldFile.getAbsolutePath());
-
-						if (finalDestinationFileWithExtensions.renameTo(oldFile)) {
-//							System.out.println("Existing file renamed for versioning: " + oldFile.getName());
-							logger.info("Existing file renamed for versioning: {}", oldFile.getName());
-						} else {
-//							System.err.println("Failed to rename existing file for versioning: "
-//									+ finalDestinationFileWithExtensions.getAbsolutePath());
-							logger.error("Failed to rename existing file for versioning: {}",
-									finalDestinationFileWithExtensions.getAbsolutePath());
-						}
-					}
-					isVersionEnabledStatus = "y";
-					System.out.println("Versioning enabled: New file will be saved with its original name.");
+				sourceChecksum = written.sourceChecksum;
+				targetChecksum = written.targetChecksum;
+				chunkSize = written.chunkSize;
+				boolean targetVerified = written.verified;
+
+				if (targetVerified) {
+					validationStatus = written.sizeVerifiedOnly ? SIZE_VERIFIED : "Y";
+					isArchived = "Y"; // Mark as archived only if validation is successful
 				}
 
-				String isArchived = "N";
-				try (FileInputStream in = new FileInputStream(sourceFile);
-						OutputStream finalOutputStream = createChainedOutputStream(
-								new FileOutputStream(finalDestinationFileWithExtensions), encryptionStatus,
-								compressionStatus, encryptionKey)) {
-
-					sourceMd = MessageDigest.getInstance(defaultAlgorithm);
-					targetMd = MessageDigest.getInstance(defaultAlgorithm); // For logical content checksum
-
-					byte[] buffer = new byte[4096];
-					int length;
-					while ((length = in.read(buffer)) > 0) {
-						finalOutputStream.write(buffer, 0, length);
-						sourceMd.update(buffer, 0, length);
-						targetMd.update(buffer, 0, length); // Still comparing source bytes for validationStatus
-					}
-					finalOutputStream.flush(); // Crucial for chained streams
-					sourceChecksum = bytesToHexa(sourceMd.digest());
-					targetChecksum = bytesToHexa(targetMd.digest()); // This is a checksum of source bytes, not the
-																		// final target file if transformed
-
-					if (sourceChecksum != null && sourceChecksum.equals(targetChecksum)) {
-						validationStatus = "Y";
-						isArchived = "Y"; // Mark as archived only if validation is successful
-					}
+				contentWritten = true;
 
-					if (sourceFile.getName().endsWith(".txt")) {
-						throw new RuntimeException("This file is not supported");
-					}
+			} catch (IOException e) {
+//				System.err.println("Error copying file: " + sourceFile.getAbsolutePath() + " - " + e.getMessage());
+//				e.printStackTrace();
+				logger.error("Error copying file: {} - {}", sourceFile.getAbsolutePath(), e.getMessage());
+				isArchived = "N";
+			} catch (NoSuchAlgorithmException e) {
+//				System.err.println("Checksum algorithm not found: " + e.getMessage());
+//				e.printStackTrace();
+				logger.error("Checksum algorithm not found: {}", e.getMessage());
+				isArchived = "N";
+			} catch (NoSuchPaddingException e) {
+//				System.err.println("Cipher padding error: " + e.getMessage());
+//				e.printStackTrace();
+				logger.error("Cipher padding error: {}", e.getMessage());
+				isArchived = "N";
+			} catch (InvalidKeyException e) {
+//				System.err.println("Invalid encryption key: " + e.getMessage());
+//				e.printStackTrace();
+				logger.error("Invalid encryption key: {}", e.getMessage());
+				isArchived = "N";
+			} catch (Exception e) {
+//				System.err.println("General error during file copy: " + e.getMessage());
+//				e.printStackTrace();
+				logger.error("General error during file copy: {}", e.getMessage());
+				isArchived = "N";
+			} finally {
+				metadata.put("sourceChecksum", sourceChecksum);
+				metadata.put("targetChecksum", targetChecksum);
+				metadata.put("validationStatus", validationStatus);
+				metadata.put("isVersionEnable", isVersionEnabledStatus);
+				metadata.put("isEncryptionEnabled", encryptionStatus);
+				metadata.put("encryptionKey", "y".equalsIgnoreCase(encryptionStatus) ? encryptionKey : null);
+				metadata.put("isCompressionEnabled", compressionStatus);
+				metadata.put("chunkSize", chunkSize);
+				metadata.put("contentRef", contentRef);
+				metadata.put("runId", runId);
+
+				metadata.put("isArchived", isArchived);
+//				System.out.println("isArchived initial value set to: " + isArchived);
+				logger.info("isArchived initial value set to: {}", isArchived);
+
+//				System.out.println("Copied From: " + sourceFile.getAbsolutePath());
+//				System.out.println("Copied To  : " + finalDestinationFileWithExtensions.getAbsolutePath());
+//				System.out.println("Source Checksum: " + sourceChecksum);
+//				System.out.println("Target Checksum: " + targetChecksum);
+//				System.out.println("Validation Status: " + validationStatus);
+				logger.info("Copied From: {}", sourceFile.getAbsolutePath());
+				logger.info("Copied To  : {}", finalDestinationFileWithExtensions.getAbsolutePath());
+				logger.info("Source Checksum: {}", sourceChecksum);
+				logger.info("Target Checksum: {}", targetChecksum);
+				logger.info("Validation Status: {}", validationStatus);
+
+				copyContextPool.release(copyContext);
+				copyContext = null;
+			}
 
-					Map<String, Object> metadata = buildMetadata1(sourceFile, finalDestinationFileWithExtensions);
-					// --- NEW DUPLICATE CHECK LOGIC ---
-					if (filters != null && "Y".equalsIgnoreCase(filters.getRunCheckDuplicate())) {
-						String targetPathForCheck = (String) metadata.get("targetPath");
-						String targetFileNameForCheck = (String) metadata.get("targetfileName");
-
-						if (targetPathForCheck != null && targetFileNameForCheck != null) {
-							List<FileMetaData> existingDuplicates = fileDetailsStore
-									.findAllByTargetPathAndTargetFileName(targetPathForCheck, targetFileNameForCheck);
-							if (!existingDuplicates.isEmpty()) {
-//								System.out.println("RUN_CHECK_DUPLICATE: Found " + existingDuplicates.size()
-//										+ " existing duplicate entries for " + targetFileNameForCheck + " in "
-//										+ targetPathForCheck + ". Deleting older entries.");
-								logger.info(
-										"RUN_CHECK_DUPLICATE: Found {} existing duplicate entries for {} in {}. Deleting older entries.",
-										existingDuplicates.size(), targetFileNameForCheck, targetPathForCheck);
-								fileDetailsStore.deleteAll(existingDuplicates); // Delete all previously existing
-																				// duplicates
-							}
-						}
-					}
+		} else if ("purgeonly".equalsIgnoreCase(activity)) {
+			metadata = buildMetadata1(null);
+		} else if ("preview".equalsIgnoreCase(activity)) {
 
-				} catch (IOException e) {
-//					System.err.println("Error copying file: " + sourceFile.getAbsolutePath() + " - " + e.getMessage());
-//					e.printStackTrace();
-					logger.error("Error copying file: {} - {}", sourceFile.getAbsolutePath(), e.getMessage());
-					isArchived = "N";
-				} catch (NoSuchAlgorithmException e) {
-//					System.err.println("Checksum algorithm not found: " + e.getMessage());
-//					e.printStackTrace();
-					logger.error("Checksum algorithm not found: {}", e.getMessage());
-					isArchived = "N";
-				} catch (NoSuchPaddingException e) {
-//					System.err.println("Cipher padding error: " + e.getMessage());
-//					e.printStackTrace();
-					logger.error("Cipher padding error: {}", e.getMessage());
-					isArchived = "N";
-				} catch (InvalidKeyException e) {
-//					System.err.println("Invalid encryption key: " + e.getMessage());
-//					e.printStackTrace();
-					logger.error("Invalid encryption key: {}", e.getMessage());
-					isArchived = "N";
-				} catch (Exception e) {
-//					System.err.println("General error during file copy: " + e.getMessage());
-//					e.printStackTrace();
-					logger.error("General error during file copy: {}", e.getMessage());
-					isArchived = "N";
-				} finally {
-					Map<String, Object> metadata = buildMetadata1(sourceFile, finalDestinationFileWithExtensions);
-					metadata.put("sourceChecksum", sourceChecksum);
-					metadata.put("targetChecksum", targetChecksum);
-					metadata.put("validationStatus", validationStatus);
-					metadata.put("isVersionEnable", isVersionEnabledStatus);
-					metadata.put("isEncryptionEnabled", encryptionStatus);
-					metadata.put("encryptionKey", "y".equalsIgnoreCase(encryptionStatus) ? encryptionKey : null);
-					metadata.put("isCompressionEnabled", compressionStatus);
-					metadata.put("runId", runId);
-
-					metadata.put("isArchived", isArchived);
-//					System.out.println("isArchived initial value set to: " + isArchived);
-					logger.info("isArchived initial value set to: {}", isArchived);
-
-					metadataList.add(metadata);
-
-					saveMetaData(metadata);
-
-//					System.out.println("Copied From: " + sourceFile.getAbsolutePath());
-//					System.out.println("Copied To  : " + finalDestinationFileWithExtensions.getAbsolutePath());
-//					System.out.println("Source Checksum: " + sourceChecksum);
-//					System.out.println("Target Checksum: " + targetChecksum);
-//					System.out.println("Validation Status: " + validationStatus);
-					logger.info("Copied From: {}", sourceFile.getAbsolutePath());
-					logger.info("Copied To  : {}", finalDestinationFileWithExtensions.getAbsolutePath());
-					logger.info("Source Checksum: {}", sourceChecksum);
-					logger.info("Target Checksum: {}", targetChecksum);
-					logger.info("Validation Status: {}", validationStatus);
+			metadata = buildMetadata1(finalDestinationFile);
+			// In preview, we might want to log the proposed destination path
+//			System.out.println("Preview: " + sourceFile.getAbsolutePath() + " -> "
+//					+ (finalDestinationFile != null ? finalDestinationFile.getAbsolutePath() : "N/A (no copy)"));
+			logger.info("Preview: {} -> {}", sourceFile.getAbsolutePath(),
+					(finalDestinationFile != null ? finalDestinationFile.getAbsolutePath() : "N/A (no copy)"));
 
+		}
+
+		else {
+//			System.out.println("Unknown activity: " + activity);
+			logger.warn("Unknown activity: {}", activity);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Second step, run by the run's persist stage: replaces older rows of the
+	 * same target, renames the source when copyandpurge stays on one file store,
+	 * queues the file's metadata row, reports the result and, for copyandpurge,
+	 * removes the source once its copy is verified.
+	 */
+	public void persist() {
+		if ("copy".equalsIgnoreCase(activity) || "copyandpurge".equalsIgnoreCase(activity)) {
+			if (contentWritten) {
+				removeDuplicateRows();
+			}
+			if (renameTarget != null) {
+				// The row records the outcome of the rename, so it is queued after it
+				renameToDestination();
+			}
+			saveMetaData(metadata);
+
+			resultSink.add(metadata);
+
+			if ("copyandpurge".equalsIgnoreCase(activity)) {
+				if (movedToDestination) {
+					logger.info("Moved source file to the destination: {}", sourceFile.getAbsolutePath());
+				} else if ("Y".equals(validationStatus) && sourceFile.delete()) { // Only delete if the target's
+																			// checksum was verified
+//					System.out.println("Deleted source file after successful copy and validation: "
+//							+ sourceFile.getAbsolutePath());
+					logger.info("Deleted source file after successful copy and validation: {}",
+							sourceFile.getAbsolutePath());
+				} else if (!"Y".equals(validationStatus)) {
+//					System.out.println("Skipping deletion of source file due to validation failure: "
+//							+ sourceFile.getAbsolutePath());
+					logger.warn("Skipping deletion of source file due to validation failure: {}",
+							sourceFile.getAbsolutePath());
+				} else {
+//					System.err.println("Failed to delete file: " + sourceFile.getAbsolutePath());
+					logger.error("Failed to delete file: {}", sourceFile.getAbsolutePath());
 				}
+			}
+		} else if ("purgeonly".equalsIgnoreCase(activity)) {
+			try {
+				saveMetaData(metadata);
+				resultSink.add(metadata);
+
+				// here insted of using if-else just use delete() and log the result it helps to
+				// catch the issue in thread
+//				if (sourceFile.delete()) {
+//					System.out.println("Deleted source file: " + sourceFile.getAbsolutePath());
+//				} else {
+//					System.err.println("Failed to delete file: " + sourceFile.getAbsolutePath());
+//				}
+				sourceFile.delete();
+			} catch (Exception e) {
+//				System.err.println("Error during purge operation: " + e.getMessage());
+//				e.printStackTrace();
+				logger.error("Error during purge operation: {}", e.getMessage());
+			}
+		} else if ("preview".equalsIgnoreCase(activity)) {
+			resultSink.add(metadata);
+		}
+	}
 
-				if ("copyandpurge".equalsIgnoreCase(activity)) {
-					if (validationStatus.equals("Y") && sourceFile.delete()) { // Only delete if validation
-																				// successful
-//						System.out.println("Deleted source file after successful copy and validation: "
-//								+ sourceFile.getAbsolutePath());
-						logger.info("Deleted source file after successful copy and validation: {}",
-								sourceFile.getAbsolutePath());
-					} else if (!validationStatus.equals("Y")) {
-//						System.out.println("Skipping deletion of source file due to validation failure: "
-//								+ sourceFile.getAbsolutePath());
-						logger.warn("Skipping deletion of source file due to validation failure: {}",
-								sourceFile.getAbsolutePath());
-					} else {
-//						System.err.println("Failed to delete file: " + sourceFile.getAbsolutePath());
-						logger.error("Failed to delete file: {}", sourceFile.getAbsolutePath());
+	/** RUN_CHECK_DUPLICATE: older rows for the same target are replaced by this file's row. */
+	private void removeDuplicateRows() {
+		try {
+			// --- NEW DUPLICATE CHECK LOGIC ---
+			if (filters != null && "Y".equalsIgnoreCase(filters.getRunCheckDuplicate())) {
+				String targetPathForCheck = (String) metadata.get("targetPath");
+				String targetFileNameForCheck = (String) metadata.get("targetfileName");
+
+				// The filter rules out targets that have no rows without asking the database
+				if (targetPathForCheck != null && targetFileNameForCheck != null
+						&& (existingTargetFilter == null || existingTargetFilter
+								.mightContain(targetPathForCheck, targetFileNameForCheck))) {
+					int deletedDuplicates = fileDetailsStore
+							.deleteAllByTargetPathAndTargetFileName(targetPathForCheck, targetFileNameForCheck);
+					if (deletedDuplicates > 0) {
+//						System.out.println("RUN_CHECK_DUPLICATE: Found " + existingDuplicates.size()
+//								+ " existing duplicate entries for " + targetFileNameForCheck + " in "
+//								+ targetPathForCheck + ". Deleting older entries.");
+						logger.info(
+								"RUN_CHECK_DUPLICATE: Deleted {} existing duplicate entries for {} in {}.",
+								deletedDuplicates, targetFileNameForCheck, targetPathForCheck);
 					}
 				}
-			} else if ("purgeonly".equalsIgnoreCase(activity)) {
-				try {
-					Map<String, Object> metadata = buildMetadata1(sourceFile, null);
-					metadataList.add(metadata);
-					saveMetaData(metadata);
-
-					// here insted of using if-else just use delete() and log the result it helps to
-					// catch the issue in thread
-//					if (sourceFile.delete()) {
-//						System.out.println("Deleted source file: " + sourceFile.getAbsolutePath());
-//					} else {
-//						System.err.println("Failed to delete file: " + sourceFile.getAbsolutePath());
-//					}
-					sourceFile.delete();
-				} catch (Exception e) {
-//					System.err.println("Error during purge operation: " + e.getMessage());
-//					e.printStackTrace();
-					logger.error("Error during purge operation: {}", e.getMessage());
+			}
+		} catch (RuntimeException e) {
+			logger.error("Error removing duplicate entries for {}: {}", sourceFile.getAbsolutePath(), e.getMessage());
+			metadata.put("isArchived", "N");
+		}
+	}
+
+	/**
+	 * Writes the source to {@code target}, applying the requested transforms, and
+	 * checks the target against the bytes that actually reached it.
+	 *
+	 * @param allowChunked whether a very large untransformed file may be copied as
+	 *                     parallel byte ranges, which changes how its checksum is
+	 *                     combined
+	 */
+	private WrittenContent writeContent(File target, String algorithm, String encryptionStatus,
+			String compressionStatus, long expectedSize, boolean allowChunked) throws IOException,
+			NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+		WrittenContent written = new WrittenContent();
+		// One digest pass over the source; the target side is checked on the bytes
+		// that actually reach the destination, without reading it back
+		MessageDigest sourceMd = copyContext.sourceDigest(algorithm);
+
+		if (!"y".equalsIgnoreCase(encryptionStatus) && !"y".equalsIgnoreCase(compressionStatus)) {
+			long transferred;
+			boolean kernelCopy = false;
+			if (allowChunked && chunkedFileCopier != null && chunkedFileCopier.appliesTo(expectedSize)) {
+				// Very large file: byte ranges copied in parallel, checksum combined from range digests
+				written.chunkSize = chunkedFileCopier.getChunkSizeBytes();
+				transferred = chunkedFileCopier.copy(sourceFile.toPath(), target.toPath(), sourceMd);
+			} else {
+				// Plain copy: zero-copy transfer, checksum from a memory-mapped read of the source
+				transferred = FileChannelCopier.copy(sourceFile.toPath(), target.toPath(), sourceMd);
+				kernelCopy = true;
+			}
+			written.sourceChecksum = bytesToHexa(sourceMd.digest());
+			written.verified = transferred == expectedSize && target.length() == transferred;
+			if (written.verified && kernelCopy && "copyandpurge".equalsIgnoreCase(activity)) {
+				// The kernel moved the bytes, so nothing hashed what reached the target. The
+				// source is about to be deleted, so hash the target while its pages are cached
+				MessageDigest targetMd = copyContext.targetDigest(algorithm);
+				FileChannelCopier.digest(target.toPath(), targetMd);
+				written.targetChecksum = bytesToHexa(targetMd.digest());
+				written.verified = written.targetChecksum.equals(written.sourceChecksum);
+				if (!written.verified) {
+					logger.error("Target checksum of {} does not match its source {}", target.getAbsolutePath(),
+							sourceFile.getAbsolutePath());
+				}
+			} else if (written.verified && kernelCopy) {
+				// Copy runs keep the source, so matching sizes are enough to record the copy
+				written.sizeVerifiedOnly = true;
+			} else if (written.verified) {
+				// Each range digest was taken from the buffer that was written
+				written.targetChecksum = written.sourceChecksum;
+			} else {
+				logger.error("Transferred {} of {} bytes to {}", transferred, expectedSize, target.getAbsolutePath());
+			}
+		} else {
+			MessageDigest targetMd = copyContext.targetDigest(algorithm); // Checksum of the stored bytes
+			Files.deleteIfExists(target.toPath()); // Never write through a hardlink to stored content
+			DigestingOutputStream targetOutputStream = new DigestingOutputStream(new FileOutputStream(target),
+					targetMd);
+			long bytesRead = 0;
+
+			try (targetOutputStream;
+					FileChannel in = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ);
+					OutputStream finalOutputStream = createChainedOutputStream(targetOutputStream, encryptionStatus,
+							compressionStatus, encryptionKey)) {
+
+				// GZIP and the cipher stream take byte arrays, so the channel reads into the pooled array
+				ByteBuffer channelBuffer = copyContext.getChannelBuffer();
+				byte[] buffer = channelBuffer.array();
+				int length;
+				while ((length = in.read(channelBuffer)) > 0) {
+					finalOutputStream.write(buffer, 0, length);
+					sourceMd.update(buffer, 0, length);
+					bytesRead += length;
+					channelBuffer.clear();
 				}
-			} else if ("preview".equalsIgnoreCase(activity)) {
+			} // Closing writes the GZIP trailer and the final cipher block
+
+			written.sourceChecksum = bytesToHexa(sourceMd.digest());
+			written.targetChecksum = bytesToHexa(targetMd.digest());
+			// Every source byte was read and every transformed byte landed on disk
+			written.verified = bytesRead == expectedSize && target.length() == targetOutputStream.getBytesWritten();
+			if (!written.verified) {
+				logger.error("Target verification failed for {}: read {} of {} source bytes, wrote {} bytes, "
+						+ "target has {} bytes", target.getAbsolutePath(), bytesRead, expectedSize,
+						targetOutputStream.getBytesWritten(), target.length());
+			}
+		}
+		return written;
+	}
 
-				Map<String, Object> metadata = buildMetadata1(sourceFile, finalDestinationFile);
-				metadataList.add(metadata);
-				// In preview, we might want to log the proposed destination path
-//				System.out.println("Preview: " + sourceFile.getAbsolutePath() + " -> "
-//						+ (finalDestinationFile != null ? finalDestinationFile.getAbsolutePath() : "N/A (no copy)"));
-				logger.info("Preview: {} -> {}", sourceFile.getAbsolutePath(),
-						(finalDestinationFile != null ? finalDestinationFile.getAbsolutePath() : "N/A (no copy)"));
+	/**
+	 * Hashes the source that {@link #renameToDestination()} will move, with a
+	 * memory-mapped read. The target will be the source's own inode, so its
+	 * checksum is the source's.
+	 */
+	private WrittenContent hashForRename(String algorithm, long expectedSize)
+			throws IOException, NoSuchAlgorithmException {
+		MessageDigest sourceMd = copyContext.sourceDigest(algorithm);
+		long hashed = FileChannelCopier.digest(sourceFile.toPath(), sourceMd);
+
+		WrittenContent written = new WrittenContent();
+		written.sourceChecksum = bytesToHexa(sourceMd.digest());
+		written.verified = hashed == expectedSize;
+		if (written.verified) {
+			written.targetChecksum = written.sourceChecksum;
+		} else {
+			logger.error("Hashed {} of {} bytes of {}", hashed, expectedSize, sourceFile.getAbsolutePath());
+		}
+		return written;
+	}
 
+	/**
+	 * copyandpurge on one file store: renames the hashed source to its target,
+	 * which costs metadata only. Runs after older rows of the target have been
+	 * removed; if that failed, or the source could not be hashed, the source
+	 * stays where it is. Where the rename is not possible, the file is copied
+	 * and verified instead, and the usual purge removes the source.
+	 */
+	private void renameToDestination() {
+		if (!contentWritten || !"Y".equals(metadata.get("isArchived"))) {
+			logger.warn("Not moving {} to {}, it was not archived", sourceFile.getAbsolutePath(),
+					renameTarget.getAbsolutePath());
+			markNotArchived();
+			return;
+		}
+		try {
+			long expectedSize = snapshot.size();
+			Files.move(sourceFile.toPath(), renameTarget.toPath(), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+			movedToDestination = true;
+			// A partial chunked copy that the rename just replaced
+			Files.deleteIfExists(ChunkCheckpoint.pathFor(renameTarget.toPath()));
+			if (renameTarget.length() != expectedSize) {
+				logger.error("Renamed {} to {} but the target has {} bytes, expected {}",
+						sourceFile.getAbsolutePath(), renameTarget.getAbsolutePath(), renameTarget.length(),
+						expectedSize);
+				markNotArchived();
 			}
+			return;
+		} catch (IOException e) {
+			logger.info("Cannot rename {} to {}, copying it instead: {}", sourceFile.getAbsolutePath(),
+					renameTarget.getAbsolutePath(), e.getMessage());
+		}
 
-			else {
-//				System.out.println("Unknown activity: " + activity);
-				logger.warn("Unknown activity: {}", activity);
+		copyContext = copyContextPool.borrow();
+		try {
+			WrittenContent written = writeContent(renameTarget, checksumAlgorithm, "n", "n", snapshot.size(), true);
+			if (written.verified) {
+				validationStatus = written.sizeVerifiedOnly ? SIZE_VERIFIED : "Y";
+				metadata.put("validationStatus", validationStatus);
+				metadata.put("targetChecksum", written.targetChecksum);
+				metadata.put("chunkSize", written.chunkSize);
+			} else {
+				markNotArchived();
 			}
-			return;
+		} catch (Exception e) {
+			logger.error("Error copying file: {} - {}", sourceFile.getAbsolutePath(), e.getMessage());
+			markNotArchived();
+		} finally {
+			copyContextPool.release(copyContext);
+			copyContext = null;
+		}
+	}
+
+	/** Records that the source was not archived; it is kept. */
+	private void markNotArchived() {
+		validationStatus = "N";
+		metadata.put("validationStatus", validationStatus);
+		metadata.put("targetChecksum", null);
+		metadata.put("isArchived", "N");
+	}
+
+	/**
+	 * Stores the source once in the run's {@link ContentStore} and links
+	 * {@code target} to it. The source is hashed first with a memory-mapped read;
+	 * content that is already stored is linked without writing a byte, and only
+	 * new content is copied into a store temp file and published.
+	 */
+	private WrittenContent storeContent(File target, String algorithm, String compressionStatus, long expectedSize)
+			throws IOException, NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+		boolean compressed = "y".equalsIgnoreCase(compressionStatus);
+		MessageDigest contentMd = copyContext.sourceDigest(algorithm);
+		long hashed = FileChannelCopier.digest(sourceFile.toPath(), contentMd);
+		String contentChecksum = bytesToHexa(contentMd.digest());
+		if (hashed != expectedSize) {
+			logger.error("Read {} of {} bytes of {} while hashing it for the content store", hashed, expectedSize,
+					sourceFile.getAbsolutePath());
+			WrittenContent written = new WrittenContent();
+			written.sourceChecksum = contentChecksum;
+			return written;
+		}
+
+		Path object = contentStore.objectPath(algorithm, contentChecksum, compressed);
+		String storedChecksum = contentStore.storedChecksum(object, contentChecksum, expectedSize, compressed);
+		WrittenContent written;
+		if (storedChecksum != null) {
+			logger.info("Content of {} is already stored as {}", sourceFile.getAbsolutePath(), object);
+			written = new WrittenContent();
+			written.sourceChecksum = contentChecksum;
+			written.targetChecksum = storedChecksum; // The target links to the verified stored bytes
+			written.verified = true;
 		} else {
-//			System.out.println("Skipping file due to filter criteria: " + sourceFile.getAbsolutePath());
-			logger.info("Skipping file due to filter criteria: {}", sourceFile.getAbsolutePath());
+			Path tempFile = contentStore.newTempFile();
+			try {
+				// Chunked copies combine range digests, which would not match the object's name
+				written = writeContent(tempFile.toFile(), algorithm, "n", compressionStatus, expectedSize, false);
+				if (written.verified && !contentChecksum.equals(written.sourceChecksum)) {
+					logger.error("{} changed while it was being stored", sourceFile.getAbsolutePath());
+					written.verified = false;
+				}
+				if (!written.verified) {
+					return written;
+				}
+				// An uncompressed object holds the content, so its name is its checksum
+				contentStore.publish(tempFile, object, compressed ? written.targetChecksum : contentChecksum);
+			} finally {
+				Files.deleteIfExists(tempFile);
+			}
 		}
 
+		written.contentRef = object.toString();
+		if (contentStore.link(target.toPath(), object)) {
+			logger.info("Linked {} to stored content {}", target.getAbsolutePath(), object);
+		}
+		return written;
 	}
 
-	private OutputStream createChainedOutputStream(FileOutputStream baseOutputStream, String encryptionStatus,
+	private OutputStream createChainedOutputStream(OutputStream baseOutputStream, String encryptionStatus,
 			String compressionStatus, String encryptionKey)
 			throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IOException {
 
@@ -361,7 +668,9 @@ public class FileDetailsUpdate implements Runnable {
 		if ("y".equalsIgnoreCase(compressionStatus)) {
 //			System.out.println("Applying GZIP Compression.");
 			logger.info("Applying GZIP Compression.");
-			currentOutputStream = new GZIPOutputStream(currentOutputStream);
+			// Reuses the worker's deflater instead of allocating a native zlib stream per file
+			currentOutputStream = new PooledGzipOutputStream(currentOutputStream, copyContext.deflater(),
+					copyContext.crc(), copyContext.getDeflateBuffer());
 		}
 
 		if ("y".equalsIgnoreCase(encryptionStatus)) {
@@ -370,14 +679,9 @@ public class FileDetailsUpdate implements Runnable {
 				throw new IllegalArgumentException(
 						"Encryption key cannot be null or empty when encryption is enabled.");
 			}
-			byte[] decodedKey = Base64.getDecoder().decode(encryptionKey);
-			// Using AES/ECB/PKCS5Padding is simpler for single-block encryption if key
-			// management is external
 			// For more robust security in real applications, consider AES/CBC/PKCS5Padding
 			// with an IV
-			SecretKeySpec secretKey = new SecretKeySpec(decodedKey, "AES");
-			Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-			cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+			Cipher cipher = copyContext.encryptCipher(encryptionKey);
 //			System.out.println("Applying AES Encryption.");
 			logger.info("Applying AES Encryption.");
 			currentOutputStream = new CipherOutputStream(currentOutputStream, cipher);
@@ -385,16 +689,22 @@ public class FileDetailsUpdate implements Runnable {
 		return currentOutputStream;
 	}
 
-	private String bytesToHexa(byte[] bytes) {
-		StringBuilder sb = new StringBuilder();
-		for (byte b : bytes) {
-			sb.append(String.format("%02x", b));
+	private boolean isUnchangedSinceArchived() {
+		try {
+			return archivedFileIndex.isUnchanged(sourceFile, snapshot.attributes());
+		} catch (IOException e) {
+			logger.warn("Could not read attributes of {} for incremental sync, copying it: {}",
+					sourceFile.getAbsolutePath(), e.getMessage());
+			return false;
 		}
-		return sb.toString();
+	}
+
+	private String bytesToHexa(byte[] bytes) {
+		return CopyContext.toHex(bytes);
 	}
 
 	private void saveMetaData(Map<String, Object> metadata) {
-		if (runId != null && fileDetailsStore != null && fileCounter != null) {
+		if (runId != null && metadataWriter != null) {
 			try {
 				FileMetaData meta = new FileMetaData();
 
@@ -404,10 +714,10 @@ public class FileDetailsUpdate implements Runnable {
 				meta.setFileSrcPath((String) metadata.get("FileSrcPath"));
 				meta.setFileType((String) metadata.get("fileType"));
 				meta.setAuthor((String) metadata.get("Author"));
-				meta.setCreationDate((String) metadata.get("CreationDate"));
-				meta.setModificationDate((String) metadata.get("ModifiedDate"));
+				meta.setCreationDate(parseFileTime((String) metadata.get("CreationDate")));
+				meta.setModificationDate(parseFileTime((String) metadata.get("ModifiedDate")));
 				meta.setRunId(runId);
-				meta.setCreatedAt(LocalDateTime.now().toString());
+				meta.setCreatedAt(LocalDateTime.now());
 				if ("copy".equalsIgnoreCase(activity) || "copyandpurge".equalsIgnoreCase(activity)) {
 					meta.setTargetPath((String) metadata.get("targetPath")); // Already processed to be parent path
 					meta.setTargetFileName((String) metadata.get("targetfileName"));
@@ -419,6 +729,8 @@ public class FileDetailsUpdate implements Runnable {
 					meta.setFileEncryptionKey((String) metadata.get("encryptionKey"));
 					meta.setFileCompression((String) metadata.get("isCompressionEnabled"));
 					meta.setIsArchived((String) metadata.get("isArchived"));
+					meta.setChunkSize((Long) metadata.get("chunkSize"));
+					meta.setContentRef((String) metadata.get("contentRef"));
 
 				} else {
 					meta.setTargetPath(null);
@@ -431,12 +743,11 @@ public class FileDetailsUpdate implements Runnable {
 					meta.setFileCompression(null);
 				}
 
-				int count = fileCounter.incrementAndGet();
-				String fileId = runId + "." + String.format("%03d", count);
+				String fileId = runContext.nextFileId();
 
 				meta.setFileId(fileId);
 				metadata.put("fileId", fileId);
-				fileDetailsStore.save(meta);
+				metadataWriter.add(meta); // Inserted by the run's metadata writer
 
 			} catch (Exception e) {
 //				System.err.println(
@@ -447,67 +758,66 @@ public class FileDetailsUpdate implements Runnable {
 			}
 		} else {
 //			System.out.println("Warning: Metadata will not be saved. runId, fileDetailsStore, or fileCounter is null.");
-			logger.warn("Metadata will not be saved. runId, fileDetailsStore, or fileCounter is null.");
+			logger.warn("Metadata will not be saved. runId or metadataWriter is null.");
 		}
 	}
 
-	private Map<String, Object> buildMetadata1(File source, File dest) {
-		Map<String, Object> dMap = new HashMap<>();
-		Path sourcePath = source.toPath();
-
-		if (source.exists()) {
-			try {
-				BasicFileAttributes attrs = Files.readAttributes(sourcePath, BasicFileAttributes.class);
-				FileOwnerAttributeView ownerAttr = Files.getFileAttributeView(sourcePath, FileOwnerAttributeView.class);
-				UserPrincipal owner = (ownerAttr != null) ? ownerAttr.getOwner() : null;
-
-				String fileName = source.getName();
-
-				String extension = "";
-				int dotIndex = fileName.lastIndexOf(".");
-				if (dotIndex > 0 && dotIndex < fileName.length() - 1) {
-					extension = fileName.substring(dotIndex + 1);
-				}
+	/** File times are reported as {@link java.nio.file.attribute.FileTime} strings, which are ISO-8601 instants. */
+	private Instant parseFileTime(String fileTime) {
+		if (fileTime == null) {
+			return null;
+		}
+		try {
+			return Instant.parse(fileTime);
+		} catch (DateTimeParseException e) {
+			logger.warn("Cannot store file time '{}' of {}: {}", fileTime, sourceFile.getAbsolutePath(), e.getMessage());
+			return null;
+		}
+	}
 
-				dMap.put("fileName", source.getName());
-				dMap.put("FilePath", source.getAbsolutePath());
-				dMap.put("CreationDate", attrs.creationTime().toString());
-				dMap.put("Size", source.length());
-				dMap.put("FileSrcPath", source.getParent());
-				dMap.put("ModifiedDate", attrs.lastModifiedTime().toString());
-				dMap.put("fileType", extension);
-				dMap.put("Author", owner != null ? owner.getName() : "UNKNOWN");
-
-				if (dest != null) {
-					dMap.put("targetfileName", dest.getName());
-					// Set targetPath to the parent directory of the final destination file
-					dMap.put("targetPath", dest.getParentFile() != null ? dest.getParentFile().getAbsolutePath()
-							: dest.getAbsolutePath());
-				}
+	/** Source attributes come from the snapshot, so they are read once whichever stages need them. */
+	private Map<String, Object> buildMetadata1(File dest) {
+		Map<String, Object> dMap = new HashMap<>();
 
-			} catch (IOException e) {
-//				System.err.println(
-//						"Error retrieving metadata for file: " + source.getAbsolutePath() + " - " + e.getMessage());
-//				e.printStackTrace();
-				logger.error("Error retrieving metadata for file: {} - {}", source.getAbsolutePath(), e.getMessage());
+		try {
+			BasicFileAttributes attrs = snapshot.attributes();
+
+			dMap.put("fileName", snapshot.getName());
+			dMap.put("FilePath", sourceFile.getAbsolutePath());
+			dMap.put("CreationDate", attrs.creationTime().toString());
+			dMap.put("Size", attrs.size());
+			dMap.put("FileSrcPath", sourceFile.getParent());
+			dMap.put("ModifiedDate", attrs.lastModifiedTime().toString());
+			dMap.put("fileType", snapshot.getExtension());
+			dMap.put("Author", snapshot.owner());
+
+			if (dest != null) {
+				dMap.put("targetfileName", dest.getName());
+				// Set targetPath to the parent directory of the final destination file
+				dMap.put("targetPath", dest.getParentFile() != null ? dest.getParentFile().getAbsolutePath()
+						: dest.getAbsolutePath());
 			}
-		} else {
+
+		} catch (NoSuchFileException e) {
 //			System.out.println("Source file does not exist when building metadata: " + source.getAbsolutePath());
-			logger.warn("Source file does not exist when building metadata: {}", source.getAbsolutePath());
+			logger.warn("Source file does not exist when building metadata: {}", sourceFile.getAbsolutePath());
+		} catch (IOException e) {
+//			System.err.println(
+//					"Error retrieving metadata for file: " + source.getAbsolutePath() + " - " + e.getMessage());
+//			e.printStackTrace();
+			logger.error("Error retrieving metadata for file: {} - {}", sourceFile.getAbsolutePath(), e.getMessage());
 		}
 		return dMap;
 	}
 
-	public static void add(Map<String, Object> dto) {
-		metadataList.add(dto);
-	}
-
-	public static List<Map<String, Object>> getAll() {
-		return Collections.unmodifiableList(metadataList);
-	}
-
-	public static void clear() {
-		metadataList.clear();
+	/** Outcome of writing one file's content to the destination. */
+	private static final class WrittenContent {
+		private String sourceChecksum;
+		private String targetChecksum;
+		private boolean verified;
+		private boolean sizeVerifiedOnly; // verified, but targetChecksum is null
+		private Long chunkSize;
+		private String contentRef;
 	}
 
 	/**
@@ -0,0 +1,92 @@
+package com.example.demo.thread;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileOwnerAttributeView;
+import java.nio.file.attribute.UserPrincipal;
+
+import lombok.Getter;
+
+/**
+ * What a run knows about one source file, read at most once and then shared
+ * by the filter, copy and metadata stages. The name parts come from the path
+ * and cost no I/O; the attributes are read on first use (one stat) unless the
+ * traversal already had them, and the owner is looked up only when a filter or
+ * the metadata asks for it. On network file systems every stat is a round-trip.
+ *
+ * Values never change once read. A snapshot belongs to one task at a time, so
+ * the lazy reads are not synchronized.
+ */
+public final class FileSnapshot {
+
+	private static final String UNKNOWN_OWNER = "UNKNOWN";
+
+	@Getter
+	private final File file;
+	@Getter
+	private final String name;
+	@Getter
+	private final String extension; // Without the dot, "" when the name has none
+	@Getter
+	private final String lowerCaseName;
+	@Getter
+	private final String lowerCaseNameWithoutExtension;
+	@Getter
+	private final String lowerCaseExtension;
+
+	private BasicFileAttributes attributes;
+	private String owner;
+
+	private FileSnapshot(File file, BasicFileAttributes attributes) {
+		this.file = file;
+		this.attributes = attributes;
+		this.name = file.getName();
+		this.lowerCaseName = name.toLowerCase();
+		int dotIndex = name.lastIndexOf('.');
+		if (dotIndex > 0 && dotIndex < name.length() - 1) {
+			this.extension = name.substring(dotIndex + 1);
+			this.lowerCaseNameWithoutExtension = lowerCaseName.substring(0, dotIndex);
+		} else { // No dot, or dot at the beginning/end (e.g., ".profile", "filename.")
+			this.extension = "";
+			this.lowerCaseNameWithoutExtension = lowerCaseName;
+		}
+		this.lowerCaseExtension = extension.toLowerCase();
+	}
+
+	public static FileSnapshot of(File file) {
+		return new FileSnapshot(file, null);
+	}
+
+	/** For traversals that already read the attributes while listing the directory. */
+	public static FileSnapshot of(File file, BasicFileAttributes attributes) {
+		return new FileSnapshot(file, attributes);
+	}
+
+	public Path getPath() {
+		return file.toPath();
+	}
+
+	public BasicFileAttributes attributes() throws IOException {
+		if (attributes == null) {
+			attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		}
+		return attributes;
+	}
+
+	public long size() throws IOException {
+		return attributes().size();
+	}
+
+	/** Owner name as reported by the file system, or "UNKNOWN" when it has no owner view. */
+	public String owner() throws IOException {
+		if (owner == null) {
+			FileOwnerAttributeView ownerAttr = Files.getFileAttributeView(file.toPath(), FileOwnerAttributeView.class);
+			UserPrincipal principal = (ownerAttr != null) ? ownerAttr.getOwner() : null;
+			owner = (principal != null) ? principal.getName() : UNKNOWN_OWNER;
+		}
+		return owner;
+	}
+}
@@ -1,26 +1,20 @@
 package com.example.demo.thread;
 
 import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import com.example.demo.config.FileCopyProperties;
 import com.example.demo.dto.FileFilters;
-import com.example.demo.dto.update.FolderPathFilterCriteria;
-import com.example.demo.repository.FileDetailsStore;
 
 //@Slf4j
 //if we use lombok for logger use above annotation and log.info instead of logger.info
@@ -28,31 +22,74 @@ public class FilesCopyThread implements Runnable {
 
 	private static final Logger logger = LoggerFactory.getLogger(FilesCopyThread.class);
 
+	private static final Pattern KB_ID_PATTERN = Pattern.compile("[A-Za-z0-9_]+");
+
 	private File sourceFile;
 	private File destinationFile = null;
-	private File sourceRootPath;
-	private FileDetailsStore fileDetailsStore;
 	private BigDecimal runId;
 
 	private String activity;
 	private FileFilters filters;
-	private String encryptionKey;
+	private RunContext runContext;
 	private JdbcTemplate jdbcTemplate;
+	private CopyWorkerPool workerPool;
+	private DirectoryScanner directoryScanner;
+	private FileCopyProperties properties;
+	// Set while the source tree is scanned; transformStage replaces copyStage for runs that compress or encrypt
+	private volatile PipelineStage<FileSnapshot> filterStage;
+	private volatile PipelineStage<FileDetailsUpdate> copyStage;
+	private volatile PipelineStage<FileDetailsUpdate> transformStage;
+	private volatile PipelineStage<FileDetailsUpdate> persistStage;
+	private final LongAdder filesAccepted = new LongAdder();
+	private final LongAdder filesCompleted = new LongAdder();
+
+	public FilesCopyThread(RunContext runContext, JdbcTemplate jdbcTemplate, CopyWorkerPool workerPool,
+			DirectoryScanner directoryScanner, FileCopyProperties properties) {
+
+		this.sourceFile = runContext.getSourceRootPath();
+		this.destinationFile = runContext.getDestinationRootPath();
+		this.runId = runContext.getRunId();
+		this.activity = runContext.getActivity();
+		this.filters = runContext.getFilters();
+		this.runContext = runContext;
+		this.jdbcTemplate = jdbcTemplate;
+		this.workerPool = workerPool;
+		this.directoryScanner = directoryScanner;
+		this.properties = properties;
+	}
 
-	private AtomicInteger fileCounter = new AtomicInteger(0);
+	/** Files that passed the filters and entered the copy or transform stage. */
+	public long getFilesSubmitted() {
+		return filesAccepted.sum();
+	}
 
-	public FilesCopyThread(File srcPath, File destPath, FileDetailsStore fileDetailsStore, BigDecimal runId,
-			String activity, FileFilters filters, String encryptionKey, JdbcTemplate jdbcTemplate) {
+	/** Accepted files that have been through every stage, successfully or not. */
+	public long getFilesCompleted() {
+		return filesCompleted.sum();
+	}
 
-		this.sourceFile = srcPath;
-		this.destinationFile = destPath;
-		this.sourceRootPath = srcPath;
-		this.fileDetailsStore = fileDetailsStore;
-		this.runId = runId;
-		this.activity = activity;
-		this.filters = filters;
-		this.encryptionKey = encryptionKey;
-		this.jdbcTemplate = jdbcTemplate;
+	/**
+	 * Items waiting in the queue of each stage of the run's pipeline, plus the
+	 * metadata rows not yet written. The stage with the deepest queue is the one
+	 * holding the run back.
+	 */
+	public Map<String, Long> getStageQueueDepths() {
+		Map<String, Long> depths = new LinkedHashMap<>();
+		depths.put("filter", queueDepth(filterStage));
+		if (isTransformed()) {
+			depths.put("transform", queueDepth(transformStage));
+		} else {
+			depths.put("copy", queueDepth(copyStage));
+		}
+		depths.put("persist", queueDepth(persistStage));
+		if (runContext.getMetadataWriter() != null) {
+			depths.put("metadata", (long) runContext.getMetadataWriter().getQueuedCount());
+		}
+		return depths;
+	}
+
+	private static long queueDepth(PipelineStage<?> stage) {
+		return stage != null ? stage.getQueueDepth() : 0L;
 	}
 
 	@Override
@@ -75,120 +112,188 @@ public class FilesCopyThread implements Runnable {
 				logger.info("Initial Destination root folder created: {}", destinationFile.getAbsolutePath());
 			}
 
-			// Start traversal with the initial source and destination roots
-			travelDirectory(sourceFile, destinationFile);
+			if (filters != null && "y".equalsIgnoreCase(filters.getIncrementalSync())) {
+				runContext.setArchivedFileIndex(ArchivedFileIndex.load(jdbcTemplate, sourceFile, destinationFile));
+			}
+			if (filters != null && "y".equalsIgnoreCase(filters.getRunCheckDuplicate())) {
+				runContext.setExistingTargetFilter(ExistingTargetFilter.load(jdbcTemplate, destinationFile));
+			}
+			if (filters != null && "y".equalsIgnoreCase(filters.getDeduplicateContent())) {
+				if ("y".equalsIgnoreCase(filters.getFileEncryption())) {
+					logger.warn("Content deduplication does not apply to encrypted copies, run {} copies every file",
+							runId);
+				} else {
+					try {
+						runContext.setContentStore(new ContentStore(destinationFile.toPath()));
+					} catch (IOException e) {
+						logger.error("Cannot create the content store under {}, copying without deduplication: {}",
+								destinationFile.getAbsolutePath(), e.getMessage());
+					}
+				}
+			}
+
+			if ("copyandpurge".equalsIgnoreCase(activity)) {
+				runContext.setSameFileStore(isSameFileStore(sourceFile, destinationFile));
+			}
+
+			// Start traversal at the source root; FileDetailsUpdate derives each target path
+			travelDirectory(sourceFile);
 		} else if ("preview".equalsIgnoreCase(activity) || "purgeonly".equalsIgnoreCase(activity)) {
 
-			travelDirectory(sourceFile, null);
+			travelDirectory(sourceFile);
 
 		} else {
 			logger.error("Unknown activity type: {}", activity);
 		}
 
+		logger.info("All {} accepted files completed for run {}", filesCompleted.sum(), runId);
+		// Waits for the metadata writer to drain; the KB archive step below reads the rows back
+		if (runContext.getMetadataWriter() != null) {
+			runContext.getMetadataWriter().close();
+		}
+		if (Thread.currentThread().isInterrupted()) {
+			logger.error("Run {} was interrupted, its KB archive step is skipped", runId);
+			return;
+		}
+
 		if (filters != null && filters.getKbId() != null && !filters.getKbId().trim().isEmpty()) {
 			insertMd(runId);
 		}
 	}
 
 	/**
-	 * Recursively traverses the source directory.
-	 *
-	 * @param currentSourceItem     The current file or directory being processed in
-	 *                              the source.
-	 * @param currentDestinationDir The corresponding destination directory for
-	 *                              `currentSourceItem`. This helps maintain the
-	 *                              relative path for directory creation during
-	 *                              traversal, but the *full* destination file path
-	 *                              is ultimately determined in `FileDetailsUpdate`.
+	 * Whether files can be renamed from the source root to the destination root.
+	 * Checked once per run; a nested mount that makes a single rename cross file
+	 * systems is detected when that rename fails.
 	 */
-	private void travelDirectory(File currentSourceItem, File currentDestinationDir) {
-
-		if (currentSourceItem.isDirectory()) {
+	private boolean isSameFileStore(File source, File destination) {
+		try {
+			boolean same = Files.getFileStore(source.toPath()).equals(Files.getFileStore(destination.toPath()));
+			logger.info("Source and destination of run {} are {}on the same file store", runId, same ? "" : "not ");
+			return same;
+		} catch (IOException e) {
+			logger.warn("Cannot compare file stores of {} and {}: {}", source, destination, e.getMessage());
+			return false;
+		}
+	}
 
-			// Apply folder path filters only to directories
-			if (!checkFolderPathForDirectory(currentSourceItem, filters)) {
-				logger.info("Skipping directory due to filter criteria: {}", currentSourceItem.getAbsolutePath());
-				return;
+	/**
+	 * Runs the run's pipeline: the shared scan pool lists the source tree into
+	 * the filter stage; accepted files go to the copy stage, which runs on the
+	 * shared copy workers, or to the transform stage when the run compresses or
+	 * encrypts; copied files go to the persist stage. Each stage is closed once
+	 * the one feeding it has finished, so this returns when every file is done.
+	 */
+	private void travelDirectory(File root) {
+		persistStage = new PipelineStage<>("file-persist-" + runId, properties.getPersist().getThreads(),
+				properties.getPersist().getQueueCapacity(), this::persistFile);
+		try {
+			if (isTransformed()) {
+				transformStage = new PipelineStage<>("file-transform-" + runId, properties.getTransform().getThreads(),
+						properties.getTransform().getQueueCapacity(), this::transferFile);
+			} else {
+				copyStage = new PipelineStage<>("file-copy-" + runId, workerPool::execute, workerPool.getMaxWorkers(),
+						properties.getCopy().getQueueCapacity(), this::transferFile);
 			}
-
-			// If currentSourceItem is a directory, then currentDestinationDir should be its
-			// corresponding directory at the destination.
-			// Ensure this corresponding destination directory exists.
-//			if (currentDestinationDir != null && !currentDestinationDir.exists()) {
-//				currentDestinationDir.mkdirs();
-//			}
-
-			File[] items = currentSourceItem.listFiles();
-
-			if (items != null) {
-				for (File item : items) {
-					File nextDestinationDir = null;
-					if (currentDestinationDir != null) {
-						// Form the next destination directory based on the current destination
-						// directory
-						// and the name of the current item (which is a directory or file)
-						nextDestinationDir = new File(currentDestinationDir, item.getName());
-						logger.debug("Next destination directory: {}", nextDestinationDir.getAbsolutePath());
-					}
-					travelDirectory(item, nextDestinationDir);
+			try {
+				filterStage = new PipelineStage<>("file-filter-" + runId, properties.getFilter().getThreads(),
+						properties.getFilter().getQueueCapacity(), this::filterFile);
+				try {
+					directoryScanner.scan(root.toPath(), runContext.getFilterPlan(), filterStage::submit);
+				} finally {
+					filterStage.close();
 				}
+			} finally {
+				transferStage().close();
+			}
+		} finally {
+			persistStage.close();
+			long dropped = droppedCount(filterStage) + droppedCount(copyStage) + droppedCount(transformStage)
+					+ droppedCount(persistStage);
+			if (dropped > 0) {
+				logger.error("Run {} was interrupted and dropped {} files from its pipeline", runId, dropped);
+				runContext.getResultSink().addDroppedFiles(dropped);
 			}
-		} else { // It's a file
-			// For files, pass the original *root* destination path (`this.destinationFile`)
-			// to `FileDetailsUpdate`. `FileDetailsUpdate` will handle the full path
-			// construction
-			// including source path inclusion logic and creating necessary parent
-			// directories.
-
-			Runnable R = new FileDetailsUpdate(currentSourceItem, this.destinationFile, this.sourceRootPath,
-					fileDetailsStore, runId, fileCounter, activity, filters, encryptionKey);
-			Thread subThread = new Thread(R);
-			subThread.start();
+		}
+	}
 
-			try {
-				subThread.join();
-			} catch (InterruptedException e) {
-				logger.error("Thread interrupted: ", e);
+	/** The stage accepted files go to: the copy stage, or the transform stage of a run that compresses or encrypts. */
+	private PipelineStage<FileDetailsUpdate> transferStage() {
+		return transformStage != null ? transformStage : copyStage;
+	}
+
+	private static long droppedCount(PipelineStage<?> stage) {
+		return stage != null ? stage.getDroppedCount() : 0L;
+	}
+
+	/** Compressing and encrypting are CPU-bound, so those runs get a stage sized for the cores. */
+	private boolean isTransformed() {
+		return ("copy".equalsIgnoreCase(activity) || "copyandpurge".equalsIgnoreCase(activity)) && filters != null
+				&& ("y".equalsIgnoreCase(filters.getFileEncryption())
+						|| "y".equalsIgnoreCase(filters.getFileCompression()));
+	}
+
+	private void filterFile(FileSnapshot snapshot) {
+		if (runContext.getFilterPlan().accepts(snapshot)) {
+			filesAccepted.increment();
+			transferStage().submit(new FileDetailsUpdate(snapshot, runContext));
+		} else {
+			logger.info("Skipping file due to filter criteria: {}", snapshot.getFile().getAbsolutePath());
+		}
+	}
+
+	private void transferFile(FileDetailsUpdate task) {
+		boolean persist = false;
+		try {
+			persist = task.transfer();
+		} finally {
+			if (persist) {
+				persistStage.submit(task);
+			} else {
+				filesCompleted.increment();
 			}
+		}
+	}
 
+	private void persistFile(FileDetailsUpdate task) {
+		try {
+			task.persist();
+		} finally {
+			filesCompleted.increment();
 		}
 	}
 
+	/**
+	 * Copies the run's archived rows into the KB's archive table with a single
+	 * server-side {@code INSERT ... SELECT}, so no row passes through this JVM and
+	 * memory use does not depend on the size of the run.
+	 */
 	private void insertMd(BigDecimal runId) {
 		String kbId = filters.getKbId() != null ? filters.getKbId().trim() : null;
-		String selectSQL = "SELECT * FROM file_meta_data WHERE is_archived = 'Y' AND run_id = ?";
 
 		if (kbId == null || kbId.isEmpty()) {
 			logger.error("KB ID is missing. Cannot continue insertMd()");
 			return;
 		}
+		// The KB id becomes part of a table name, which cannot be a bind parameter
+		if (!KB_ID_PATTERN.matcher(kbId).matches()) {
+			logger.error("Invalid KB ID '{}': only letters, digits and underscores are allowed", kbId);
+			return;
+		}
 
-		try (Connection conn = Objects.requireNonNull(jdbcTemplate.getDataSource()).getConnection();
-				PreparedStatement selectStmt = conn.prepareStatement(selectSQL)) {
-
-			selectStmt.setBigDecimal(1, runId);
-			ResultSet rs = selectStmt.executeQuery();
-
-			List<Map<String, Object>> rows = new ArrayList<>();
-			ResultSetMetaData metaData = rs.getMetaData();
-			int columnCount = metaData.getColumnCount();
-
-			while (rs.next()) {
-				Map<String, Object> row = new HashMap<>();
-				for (int i = 1; i <= columnCount; i++) {
-					row.put(metaData.getColumnName(i), rs.getObject(i));
-				}
-				rows.add(row);
-			}
-
-			insertMDEDMS(rows, kbId, conn); // Now pass a list instead of live ResultSet
-
+		try {
+			insertMDEDMS(runId, kbId);
 		} catch (Exception e) {
 			logger.error("Error in insertMd(): {}", e.getMessage(), e);
 		}
 	}
 
-	private void insertMDEDMS(List<Map<String, Object>> rows, String kbId, Connection conn) throws SQLException {
+	// The KB tables keep their varchar dates in the text form they always had: file
+	// times as UTC instants (FileTime.toString()), created_at as local date-time
+	private static final String KB_FILE_TIME_FORMAT = "%Y-%m-%dT%H:%i:%s.%fZ";
+	private static final String KB_CREATED_AT_FORMAT = "%Y-%m-%dT%H:%i:%s.%f";
+
+	private void insertMDEDMS(BigDecimal runId, String kbId) {
 		String tableName = "edms_filearchive_metadata_" + kbId;
 
 		String createTableSQL = "CREATE TABLE IF NOT EXISTS " + tableName + " (" + "file_id varchar(100) NULL, "
@@ -209,138 +314,22 @@ public class FilesCopyThread implements Runnable {
 //				+ "retention_applied varchar(1) DEFAULT 'N' CHECK (retention_applied IN ('Y','N')), "
 				+ "retention_run_id decimal(20,0) NULL" + ")";
 
-		try (PreparedStatement createStmt = conn.prepareStatement(createTableSQL)) {
-			createStmt.execute();
-		}
+		jdbcTemplate.execute(createTableSQL);
 
 		String insertSQL = "INSERT INTO " + tableName + " (file_id, file_path, creation_date, size, file_name, "
 				+ "file_src_path, target_path, modification_date, file_type, author, target_file_name, "
 				+ "source_checksum, target_checksum, validation_status, run_id, is_archived,is_version_enable,"
 				+ "file_encryption,file_encryption_key,file_compression,created_at,legal_holds_applied,legal_holds_run_id, retention_applied,retention_run_id) "
-				+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ";
-
-		try (PreparedStatement insertStmt = conn.prepareStatement(insertSQL)) {
-			int count = 0;
-			for (Map<String, Object> row : rows) {
-				insertStmt.setString(1, (String) row.get("file_id"));
-				insertStmt.setString(2, (String) row.get("file_path"));
-				insertStmt.setString(3, (String) row.get("creation_date"));
-				insertStmt.setLong(4, (Long) row.get("size"));
-				insertStmt.setString(5, (String) row.get("file_name"));
-				insertStmt.setString(6, (String) row.get("file_src_path"));
-				insertStmt.setString(7, (String) row.get("target_path"));
-				insertStmt.setString(8, (String) row.get("modification_date"));
-				insertStmt.setString(9, (String) row.get("file_type"));
-				insertStmt.setString(10, (String) row.get("author"));
-				insertStmt.setString(11, (String) row.get("target_file_name"));
-				insertStmt.setString(12, (String) row.get("source_checksum"));
-				insertStmt.setString(13, (String) row.get("target_checksum"));
-				insertStmt.setString(14, (String) row.get("validation_status"));
-				insertStmt.setBigDecimal(15, (BigDecimal) row.get("run_id"));
-				insertStmt.setString(16, (String) row.get("is_archived"));
-				insertStmt.setString(17, (String) row.get("is_version_enable"));
-				insertStmt.setString(18, (String) row.get("file_encryption"));
-				insertStmt.setString(19, (String) row.get("file_encryption_key"));
-				insertStmt.setString(20, (String) row.get("file_compression"));
-				insertStmt.setString(21, (String) row.get("created_at"));
-//				insertStmt.setString(22, (String) row.getOrDefault("legal_holds_applied", "N"));
-				insertStmt.setString(22, "N");
-				insertStmt.setBigDecimal(23, (BigDecimal) row.get("legal_holds_run_id"));
-//				insertStmt.setString(24, (String) row.getOrDefault("retention_applied", "N"));
-				insertStmt.setString(24, "N");
-				insertStmt.setBigDecimal(25, (BigDecimal) row.get("retention_run_id"));
-
-				insertStmt.addBatch();
-				count = count + 1;
-//				if (count % 5 == 0 || count == rows.size()) {
-//					insertStmt.executeBatch();
-//					logger.info("Prepared {} records for insertion into {}", count, tableName);
-//				}
-				if (count == 5) {
-					insertStmt.executeBatch();
-					count = 0;
-					logger.info("Prepared 5 records for insertion into {}", tableName);
-				}
-			}
-			if (count > 0) {
-				insertStmt.executeBatch();
-				logger.info("Prepared {} records for insertion into {}", tableName);
-			}
-
-		}
-	}
-
-	/**
-	 * This method checks if a given directory should be traversed based on
-	 * FolderPathFilterCriteria. It's crucial for the `travelDirectory` recursion to
-	 * efficiently skip entire branches. This logic is *different* from
-	 * `FileFilterUtility.checkFolderPathFilters` which checks a file's parent path.
-	 * Here, we check if the *current directory itself* is included/excluded.
-	 */
-	private boolean checkFolderPathForDirectory(File directory, FileFilters filters) {
-		if (filters == null || filters.getFolderPathFilterCriteria() == null
-				|| filters.getFolderPathFilterCriteria().isEmpty()) {
-			return true; // No folder filters, so include by default
-		}
-
-		String currentDirectoryPath = directory.getAbsolutePath();
-		String currentDirectoryPathLower = currentDirectoryPath.toLowerCase();
-
-		List<FolderPathFilterCriteria> criteriaList = filters.getFolderPathFilterCriteria();
-
-		boolean anyIncludeMatched = false;
-		boolean hasIncludeCriteria = false;
-
-		for (FolderPathFilterCriteria criteria : criteriaList) {
-			if (!"FOLDER_PATH".equalsIgnoreCase(criteria.getParamName())) {
-				continue; // Skip criteria not meant for folder paths
-			}
-			if (criteria.getParamValue() == null || criteria.getParamValue().trim().isEmpty()) {
-				continue; // Skip empty criteria
-			}
-
-			String paramValueLower = criteria.getParamValue().toLowerCase();
-			boolean currentMatch = false;
-
-			switch (criteria.getCriteria1().toLowerCase()) {
-			case "contains":
-				currentMatch = currentDirectoryPathLower.contains(paramValueLower);
-				break;
-			case "startswith":
-				currentMatch = currentDirectoryPathLower.startsWith(paramValueLower);
-				break;
-			case "endswith":
-				currentMatch = currentDirectoryPathLower.endsWith(paramValueLower);
-				break;
-			default:
-				logger.warn(
-						"Unknown criteria1 for FolderPathFilterCriteria in directory check: {}. Defaulting to 'contains' behavior.",
-						criteria.getCriteria1());
-				currentMatch = currentDirectoryPathLower.contains(paramValueLower); // Fallback
-				break;
-			}
-
-			if ("exclude".equalsIgnoreCase(criteria.getCriteria1())) {
-				if (currentMatch) {
-					logger.info("EXCLUDED directory by folder path criteria: {} -> {}", directory.getAbsolutePath(),
-							criteria);
-					return false; // Immediate exclusion
-				}
-			} else if ("include".equalsIgnoreCase(criteria.getCriteria1())) {
-				hasIncludeCriteria = true;
-				if (currentMatch) {
-					anyIncludeMatched = true;
-				}
-			}
-		}
-
-		if (hasIncludeCriteria && !anyIncludeMatched) {
-			logger.info("EXCLUDED directory: {} because it did not match any active include folder path criteria.",
-					directory.getAbsolutePath());
-			return false;
-		}
-
-		return true; // Directory is included
+				+ "SELECT file_id, file_path, DATE_FORMAT(creation_date, '" + KB_FILE_TIME_FORMAT + "'), size, file_name, "
+				+ "file_src_path, target_path, DATE_FORMAT(modification_date, '" + KB_FILE_TIME_FORMAT + "'), "
+				+ "file_type, author, target_file_name, "
+				+ "source_checksum, target_checksum, validation_status, run_id, is_archived, is_version_enable, "
+				+ "file_encryption, file_encryption_key, file_compression, DATE_FORMAT(created_at, '"
+				+ KB_CREATED_AT_FORMAT + "'), 'N', NULL, 'N', NULL "
+				+ "FROM file_meta_data WHERE is_archived = 'Y' AND run_id = ?";
+
+		int inserted = jdbcTemplate.update(insertSQL, runId);
+		logger.info("Inserted {} records of run {} into {}", inserted, runId, tableName);
 	}
 }
 
@@ -350,12 +339,10 @@ public class FilesCopyThread implements Runnable {
 //import java.math.BigDecimal;
 //import java.util.List;
 //import java.util.Optional; // Import Optional
-//import java.util.concurrent.atomic.AtomicInteger;
-//
+////
 //import com.example.demo.dto.FileFilters;
 //import com.example.demo.dto.update.FolderPathFilterCriteria;
-//import com.example.demo.repository.FileDetailsStore;
-//import com.example.demo.thread.update.FileDetailsUpdate;
+////import com.example.demo.thread.update.FileDetailsUpdate;
 //
 //public class FilesCopyThread implements Runnable {
 //	private File sourceFile;
@@ -0,0 +1,398 @@
+package com.example.demo.thread;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.demo.dto.FileFilters;
+import com.example.demo.dto.update.FileNameFilterCriteria;
+import com.example.demo.dto.update.FolderPathFilterCriteria;
+import com.example.demo.thread.CriteriaMatcher.Action;
+import com.example.demo.thread.CriteriaMatcher.MatchType;
+
+/**
+ * Immutable form of a run's {@link FileFilters}, compiled once when the run
+ * starts and then evaluated for every file. Parameter values are lower-cased,
+ * include/exclude and match modes are resolved to enums, invalid criteria are
+ * dropped, name and folder criteria become {@link CriteriaMatcher}s, extension
+ * and owner lists become hash sets, and date ranges and
+ * age limits become epoch-millisecond bounds on the chosen file time.
+ *
+ * File ages are measured from the moment the plan is compiled, so a file's age
+ * does not drift during a long run.
+ */
+public class FilterPlan {
+
+	private static final Logger logger = LoggerFactory.getLogger(FilterPlan.class);
+
+	private static final FilterPlan ACCEPT_ALL = new FilterPlan();
+
+	enum DateAttribute {
+		NONE, CREATION, MODIFICATION
+	}
+
+	private DateAttribute dateAttribute = DateAttribute.NONE;
+	private long notBeforeMillis = Long.MIN_VALUE; // Inclusive
+	private long notAfterMillis = Long.MAX_VALUE; // Inclusive
+
+	private Set<String> fileTypes = Collections.emptySet();
+	private Action fileTypeAction; // null: no extension filter
+
+	private CriteriaMatcher fileNameCriteria = CriteriaMatcher.EMPTY;
+	private CriteriaMatcher folderPathCriteria = CriteriaMatcher.EMPTY;
+	// Only the contains criteria can prune a directory: a folder that fails the others may still hold matching files
+	private CriteriaMatcher directoryCriteria = CriteriaMatcher.EMPTY;
+
+	private Set<String> includeOwners = Collections.emptySet();
+	private Set<String> excludeOwners = Collections.emptySet();
+
+	private Long sizeFromKB;
+	private Long sizeToKB;
+
+	private FilterPlan() {
+	}
+
+	public static FilterPlan compile(FileFilters filters) {
+		if (filters == null) {
+			return ACCEPT_ALL;
+		}
+		FilterPlan plan = new FilterPlan();
+		plan.compileDateFilters(filters, LocalDateTime.now());
+		plan.compileFileTypes(filters);
+		plan.compileFileNameCriteria(filters.getFileNameFilterCriteria());
+		plan.compileFolderPathCriteria(filters.getFolderPathFilterCriteria());
+		plan.includeOwners = lowerCaseSet(filters.getIncludeFileOwner());
+		plan.excludeOwners = lowerCaseSet(filters.getExcludeFileOwner());
+		plan.sizeFromKB = filters.getSizeFromKB();
+		plan.sizeToKB = filters.getSizeToKB();
+		logger.info("Compiled file filters: {}", plan);
+		return plan;
+	}
+
+	/** Whether the owner has to be looked up to evaluate this plan. */
+	public boolean needsOwner() {
+		return !includeOwners.isEmpty() || !excludeOwners.isEmpty();
+	}
+
+	public boolean accepts(File file) {
+		return accepts(FileSnapshot.of(file));
+	}
+
+	/**
+	 * Evaluates the plan for one file. The filters that only need the name and
+	 * path (extension, name, folder) run first, so a file they reject is never
+	 * stat'ed; the owner is looked up only when owner filters are set.
+	 */
+	public boolean accepts(FileSnapshot snapshot) {
+		if (this == ACCEPT_ALL) {
+			return true;
+		}
+		File file = snapshot.getFile();
+
+		if (!acceptsName(snapshot)) {
+			return false;
+		}
+
+		if (!folderPathCriteria.isEmpty() && !matchesParentPath(file.getParent())) {
+			return excluded(file, "folder path");
+		}
+
+		try {
+			BasicFileAttributes attrs = snapshot.attributes();
+
+			if (dateAttribute != DateAttribute.NONE) {
+				long fileTime = (dateAttribute == DateAttribute.CREATION ? attrs.creationTime()
+						: attrs.lastModifiedTime()).toMillis();
+				if (fileTime < notBeforeMillis || fileTime > notAfterMillis) {
+					return excluded(file, "file date/age");
+				}
+			}
+
+			if (needsOwner()) {
+				String fileOwnerName = snapshot.owner().toLowerCase();
+				if ((!includeOwners.isEmpty() && !includeOwners.contains(fileOwnerName))
+						|| excludeOwners.contains(fileOwnerName)) {
+					return excluded(file, "file owner");
+				}
+			}
+
+			long fileSizeKB = attrs.size() / 1024;
+			if ((sizeFromKB != null && fileSizeKB < sizeFromKB) || (sizeToKB != null && fileSizeKB > sizeToKB)) {
+				return excluded(file, "file size");
+			}
+		} catch (IOException e) {
+			logger.error("Error reading attributes for filtering file: {}", file.getAbsolutePath(), e);
+			return false;
+		}
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("File passed all filter criteria: {}", file.getAbsolutePath());
+		}
+		return true;
+	}
+
+	/**
+	 * The extension and file name filters on their own. They need only the name,
+	 * so the traversal applies them before it reads an entry's attributes.
+	 */
+	public boolean acceptsName(FileSnapshot snapshot) {
+		if (this == ACCEPT_ALL) {
+			return true;
+		}
+		if (fileTypeAction != null
+				&& fileTypes.contains(snapshot.getLowerCaseExtension()) != (fileTypeAction == Action.INCLUDE)) {
+			return excluded(snapshot.getFile(), "file type");
+		}
+		if (!fileNameCriteria.isEmpty() && !fileNameCriteria.matches(snapshot.getLowerCaseNameWithoutExtension(),
+				snapshot.getLowerCaseName())) {
+			return excluded(snapshot.getFile(), "file name");
+		}
+		return true;
+	}
+
+	/**
+	 * Whether the traversal would enter {@code path} if it were a directory; the
+	 * check of {@link #acceptsDirectory} without its log line, for entries that
+	 * are most likely files.
+	 */
+	public boolean mayEnter(File path) {
+		if (directoryCriteria.isEmpty()) {
+			return true;
+		}
+		String lowerCasePath = path.getAbsolutePath().toLowerCase();
+		return directoryCriteria.matches(lowerCasePath, lowerCasePath);
+	}
+
+	/**
+	 * Whether the traversal should descend into {@code directory}. Matches folder
+	 * path criteria against the directory's own path, so excluded branches are
+	 * skipped as a whole.
+	 */
+	public boolean acceptsDirectory(File directory) {
+		if (!mayEnter(directory)) {
+			logger.info("EXCLUDED directory by folder path criteria: {}", directory.getAbsolutePath());
+			return false;
+		}
+		return true;
+	}
+
+	private boolean matchesParentPath(String parentPath) {
+		if (parentPath == null) {
+			// A root file (or its implied parent) only matches a filter for the root itself
+			return folderPathCriteria.matchesRoot();
+		}
+		String lowerCaseParentPath = parentPath.replace(File.separatorChar, '/').toLowerCase();
+		return folderPathCriteria.matches(lowerCaseParentPath, lowerCaseParentPath);
+	}
+
+	private boolean excluded(File file, String reason) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("EXCLUDED by {} filter: {}", reason, file.getAbsolutePath());
+		}
+		return false;
+	}
+
+	private void compileDateFilters(FileFilters filters, LocalDateTime now) {
+		String baseAttribute = lowerCase(filters.getDateFilterBaseAttribute());
+		String segmentationType = lowerCase(filters.getFileAgeSegmentationType());
+		if (baseAttribute == null || segmentationType == null) {
+			return; // No date/age filter configured
+		}
+		if ("creation".equals(baseAttribute)) {
+			dateAttribute = DateAttribute.CREATION;
+		} else if ("modification".equals(baseAttribute)) {
+			dateAttribute = DateAttribute.MODIFICATION;
+		} else {
+			logger.warn("Unknown dateFilterBaseAttribute: {}. Date/Age filter skipped.",
+					filters.getDateFilterBaseAttribute());
+			return;
+		}
+
+		if ("date_range".equals(segmentationType)) {
+			if (filters.getAbsoluteDateRangeFrom() != null) {
+				notBeforeMillis = toEpochMillis(filters.getAbsoluteDateRangeFrom());
+			}
+			if (filters.getAbsoluteDateRangeTo() != null) {
+				notAfterMillis = toEpochMillis(filters.getAbsoluteDateRangeTo());
+			}
+		} else if ("file_age".equals(segmentationType)) {
+			// An age of at least N units means the file time is at or before now minus N units;
+			// an age of at most N units means it is after now minus N + 1 units
+			if (filters.getFileAgeDaysFrom() != null) {
+				upperBound(now.minusDays(filters.getFileAgeDaysFrom()));
+			}
+			if (filters.getFileAgeDaysTo() != null) {
+				lowerBoundExclusive(now.minusDays(filters.getFileAgeDaysTo() + 1));
+			}
+			if (filters.getFileAgeMonthsFrom() != null) {
+				upperBound(now.minusMonths(filters.getFileAgeMonthsFrom()));
+			}
+			if (filters.getFileAgeMonthsTo() != null) {
+				lowerBoundExclusive(now.minusMonths(filters.getFileAgeMonthsTo() + 1));
+			}
+			if (filters.getFileAgeYearsFrom() != null) {
+				upperBound(now.minusYears(filters.getFileAgeYearsFrom()));
+			}
+			if (filters.getFileAgeYearsTo() != null) {
+				lowerBoundExclusive(now.minusYears(filters.getFileAgeYearsTo() + 1));
+			}
+		} else {
+			logger.warn("Unknown fileAgeSegmentationType: {}. Date/Age filter skipped.",
+					filters.getFileAgeSegmentationType());
+			dateAttribute = DateAttribute.NONE;
+		}
+	}
+
+	private void upperBound(LocalDateTime notAfter) {
+		notAfterMillis = Math.min(notAfterMillis, toEpochMillis(notAfter));
+	}
+
+	private void lowerBoundExclusive(LocalDateTime after) {
+		notBeforeMillis = Math.max(notBeforeMillis, toEpochMillis(after) + 1);
+	}
+
+	private void compileFileTypes(FileFilters filters) {
+		if (filters.getFileTypes() == null || filters.getFileTypes().isEmpty()) {
+			return;
+		}
+		if ("Include".equalsIgnoreCase(filters.getFileTypeIncExc())) {
+			fileTypeAction = Action.INCLUDE;
+		} else if ("Exclude".equalsIgnoreCase(filters.getFileTypeIncExc())) {
+			fileTypeAction = Action.EXCLUDE;
+		} else {
+			logger.warn("Unknown fileTypeIncExc mode: {}. File type filter will be ignored.",
+					filters.getFileTypeIncExc());
+			return;
+		}
+		fileTypes = lowerCaseSet(filters.getFileTypes());
+	}
+
+	private void compileFileNameCriteria(List<FileNameFilterCriteria> criteriaList) {
+		if (criteriaList == null) {
+			return;
+		}
+		CriteriaMatcher.Builder builder = new CriteriaMatcher.Builder();
+		for (FileNameFilterCriteria criteria : criteriaList) {
+			if (!"FILE_NAME".equalsIgnoreCase(criteria.getParamName()) || isBlank(criteria.getParamValue())
+					|| isBlank(criteria.getCriteria2())) {
+				logger.warn("Skipping invalid FileNameFilterCriteria: {}", criteria);
+				continue;
+			}
+			addCriterion(builder, criteria.getCriteria1(), criteria.getCriteria2(), criteria.getParamValue(), criteria);
+		}
+		fileNameCriteria = builder.build();
+	}
+
+	private void compileFolderPathCriteria(List<FolderPathFilterCriteria> criteriaList) {
+		if (criteriaList == null) {
+			return;
+		}
+		CriteriaMatcher.Builder builder = new CriteriaMatcher.Builder();
+		CriteriaMatcher.Builder directoryBuilder = new CriteriaMatcher.Builder();
+		for (FolderPathFilterCriteria criteria : criteriaList) {
+			if (!"FOLDER_PATH".equalsIgnoreCase(criteria.getParamName()) || isBlank(criteria.getParamValue())) {
+				logger.warn("Skipping invalid FolderPathFilterCriteria: {}", criteria);
+				continue;
+			}
+			// Folder paths are matched with 'contains' unless criteria2 says otherwise
+			String criteria2 = isBlank(criteria.getCriteria2()) ? "contains" : criteria.getCriteria2();
+			if (addCriterion(builder, criteria.getCriteria1(), criteria2, criteria.getParamValue(), criteria)
+					&& "contains".equalsIgnoreCase(criteria2)) {
+				directoryBuilder.add(action(criteria.getCriteria1()), MatchType.CONTAINS,
+						criteria.getParamValue().toLowerCase());
+			}
+		}
+		folderPathCriteria = builder.build();
+		directoryCriteria = directoryBuilder.build();
+	}
+
+	/** Adds one criterion, or logs why it is skipped and returns false. */
+	private static boolean addCriterion(CriteriaMatcher.Builder builder, String criteria1, String criteria2,
+			String paramValue, Object criteria) {
+		Action action = action(criteria1);
+		MatchType matchType = matchType(criteria2);
+		if (action == null || matchType == null) {
+			logger.warn("Skipping filter criteria with unknown criteria1/criteria2: {}", criteria);
+			return false;
+		}
+		try {
+			// Regexes keep their case (e.g. \d, \S) and are matched ignoring case instead
+			builder.add(action, matchType,
+					matchType == MatchType.REGEX ? paramValue : paramValue.toLowerCase());
+			return true;
+		} catch (IllegalArgumentException e) {
+			logger.warn("Skipping filter criteria with invalid pattern: {} ({})", criteria, e.getMessage());
+			return false;
+		}
+	}
+
+	private static Action action(String criteria1) {
+		if ("include".equalsIgnoreCase(criteria1)) {
+			return Action.INCLUDE;
+		}
+		if ("exclude".equalsIgnoreCase(criteria1)) {
+			return Action.EXCLUDE;
+		}
+		return null;
+	}
+
+	private static MatchType matchType(String criteria2) {
+		switch (criteria2.toLowerCase()) {
+		case "startswith":
+			return MatchType.STARTS_WITH;
+		case "contains":
+			return MatchType.CONTAINS;
+		case "endswith":
+			return MatchType.ENDS_WITH;
+		case "glob":
+			return MatchType.GLOB;
+		case "regex":
+			return MatchType.REGEX;
+		default:
+			return null;
+		}
+	}
+
+	private static long toEpochMillis(LocalDateTime dateTime) {
+		return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+	private static Set<String> lowerCaseSet(List<String> values) {
+		if (values == null || values.isEmpty()) {
+			return Collections.emptySet();
+		}
+		Set<String> set = new HashSet<>();
+		for (String value : values) {
+			if (value != null) {
+				set.add(value.toLowerCase());
+			}
+		}
+		return Collections.unmodifiableSet(set);
+	}
+
+	private static String lowerCase(String value) {
+		return isBlank(value) ? null : value.trim().toLowerCase(Locale.ROOT);
+	}
+
+	private static boolean isBlank(String value) {
+		return value == null || value.trim().isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "FilterPlan[date=" + dateAttribute + " " + notBeforeMillis + ".." + notAfterMillis + ", fileTypes="
+				+ fileTypeAction + " " + fileTypes + ", fileName=" + fileNameCriteria + ", folderPath="
+				+ folderPathCriteria + ", includeOwners=" + includeOwners + ", excludeOwners=" + excludeOwners
+				+ ", sizeKB=" + sizeFromKB + ".." + sizeToKB + "]";
+	}
+}
@@ -0,0 +1,241 @@
+package com.example.demo.thread;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.entity.FileMetaData;
+
+/**
+ * Write-behind store for the {@link FileMetaData} rows of one run. Copy
+ * workers only enqueue rows; a dedicated writer thread drains the queue and
+ * inserts the rows in JDBC batches, so a slow database no longer stalls file
+ * I/O. The queue is bounded: when it is full, {@link #add} blocks and the copy
+ * slows down to the pace of the database.
+ *
+ * Rows are only ever inserted, so there is none of the per-row {@code SELECT}
+ * that {@code save()} issues to merge an entity with an assigned id. A batch
+ * is written once {@code batchSize} rows are collected, at least every
+ * {@code flushIntervalMillis} while rows are pending, and when the run calls
+ * {@link #close()}, which returns only after every queued row is written. If
+ * a batch fails, its rows are retried one by one so a single bad row does not
+ * lose the others; a row the failed batch had already committed is reported
+ * as a duplicate key on retry and counts as saved. The writer thread waits for rows with a timeout, so a
+ * partial batch is flushed on time even when no further row arrives. Rows that
+ * still cannot be written are counted in {@link #getFailedRowCount()} for the
+ * run summary.
+ */
+public class MetadataBatchWriter implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(MetadataBatchWriter.class);
+
+	private static final String INSERT_SQL = "INSERT INTO file_meta_data (file_id, created_at, run_id, file_name, "
+			+ "file_path, creation_date, size, file_src_path, target_path, modification_date, file_type, author, "
+			+ "source_checksum, target_checksum, validation_status, is_version_enable, file_encryption, "
+			+ "file_encryption_key, file_compression, target_file_name, is_archived, chunk_size, content_ref) "
+			+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+	// Queued by close() after the last row; identity marks the end of the run
+	private static final FileMetaData END_OF_RUN = new FileMetaData();
+
+	private final JdbcTemplate jdbcTemplate;
+	private final int batchSize;
+	private final long flushIntervalMillis;
+	private final BlockingQueue<FileMetaData> queue;
+	private final Thread writerThread;
+	private final LongAdder failedRows = new LongAdder();
+	private volatile boolean closed;
+
+	public MetadataBatchWriter(JdbcTemplate jdbcTemplate, int batchSize, long flushIntervalMillis, int queueCapacity,
+			String name) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.batchSize = Math.max(1, batchSize);
+		this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+		this.queue = new ArrayBlockingQueue<>(Math.max(this.batchSize, queueCapacity));
+		this.writerThread = new Thread(this::drain, "file-copy-metadata-" + name);
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	/** Queues a row, waiting for space while the writer is behind. */
+	public void add(FileMetaData meta) {
+		if (closed) {
+			// A file task that outlived an interrupted run; the writer is gone
+			write(List.of(meta));
+			return;
+		}
+		try {
+			queue.put(meta);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failedRows.increment();
+			logger.error("Interrupted while queueing metadata for file: {}", meta.getFileName());
+		}
+	}
+
+	/** Rows waiting to be written. */
+	public int getQueuedCount() {
+		return queue.size();
+	}
+
+	/** Rows that were not written, not even when retried on their own. */
+	public long getFailedRowCount() {
+		return failedRows.sum();
+	}
+
+	/** Waits until every queued row has been written, then stops the writer. */
+	@Override
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		boolean interrupted = false;
+		while (true) {
+			try {
+				queue.put(END_OF_RUN);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true; // The rows must still be written; remember and keep waiting
+			}
+		}
+		while (writerThread.isAlive()) {
+			try {
+				writerThread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void drain() {
+		List<FileMetaData> batch = new ArrayList<>(batchSize);
+		long nextFlush = System.currentTimeMillis() + flushIntervalMillis;
+		boolean endOfRun = false;
+		while (!endOfRun) {
+			try {
+				FileMetaData meta = queue.poll(Math.max(1, nextFlush - System.currentTimeMillis()),
+						TimeUnit.MILLISECONDS);
+				if (meta != null) {
+					batch.add(meta);
+					queue.drainTo(batch, batchSize - batch.size());
+					// END_OF_RUN is queued after the last row, so it can only be the last one taken
+					if (batch.get(batch.size() - 1) == END_OF_RUN) {
+						batch.remove(batch.size() - 1);
+						endOfRun = true;
+					}
+				}
+			} catch (InterruptedException e) {
+				// Only close() ends the writer; queued rows are never dropped
+			}
+
+			if (endOfRun || batch.size() >= batchSize || System.currentTimeMillis() >= nextFlush) {
+				try {
+					write(batch);
+				} catch (RuntimeException e) {
+					failedRows.add(batch.size());
+					logger.error("Error writing {} metadata rows: {}", batch.size(), e.getMessage(), e);
+				}
+				batch = new ArrayList<>(batchSize);
+				nextFlush = System.currentTimeMillis() + flushIntervalMillis;
+			}
+		}
+	}
+
+	private void write(List<FileMetaData> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		try {
+			jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), this::setValues);
+			logger.debug("Inserted {} metadata rows", batch.size());
+		} catch (DataAccessException e) {
+			logger.warn("Metadata batch of {} rows failed, inserting them one by one: {}", batch.size(),
+					e.getMessage());
+			for (FileMetaData meta : batch) {
+				try {
+					jdbcTemplate.update(INSERT_SQL, ps -> setValues(ps, meta));
+				} catch (DuplicateKeyException alreadySaved) {
+					// file_id is unique to this run's file, so the failed batch committed this row before it
+					// broke off (autocommit with rewriteBatchedStatements)
+					logger.debug("Metadata for file {} was saved by the failed batch", meta.getFileName());
+				} catch (DataAccessException rowFailure) {
+					failedRows.increment();
+					logger.error("Error saving metadata for file: {} - {}", meta.getFileName(),
+							rowFailure.getMessage());
+				}
+			}
+		}
+	}
+
+	private void setValues(PreparedStatement ps, FileMetaData meta) throws SQLException {
+		ps.setString(1, meta.getFileId());
+		setDateTime(ps, 2, meta.getCreatedAt());
+		ps.setBigDecimal(3, meta.getRunId());
+		ps.setString(4, meta.getFileName());
+		ps.setString(5, meta.getFilePath());
+		setDateTime(ps, 6, toUtc(meta.getCreationDate()));
+		setLong(ps, 7, meta.getSize());
+		ps.setString(8, meta.getFileSrcPath());
+		ps.setString(9, meta.getTargetPath());
+		setDateTime(ps, 10, toUtc(meta.getModificationDate()));
+		ps.setString(11, meta.getFileType());
+		ps.setString(12, meta.getAuthor());
+		ps.setString(13, meta.getSourceChecksum());
+		ps.setString(14, meta.getTargetChecksum());
+		ps.setString(15, meta.getValidationStatus());
+		ps.setString(16, meta.getIsVersionEnable());
+		ps.setString(17, meta.getFileEncryption());
+		ps.setString(18, meta.getFileEncryptionKey());
+		ps.setString(19, meta.getFileCompression());
+		ps.setString(20, meta.getTargetFileName());
+		ps.setString(21, meta.getIsArchived());
+		setLong(ps, 22, meta.getChunkSize());
+		ps.setString(23, meta.getContentRef());
+	}
+
+	// datetime(6) columns take the wall-clock value as is, without a time zone conversion
+	private static void setDateTime(PreparedStatement ps, int index, LocalDateTime value) throws SQLException {
+		if (value != null) {
+			ps.setObject(index, value);
+		} else {
+			ps.setNull(index, Types.TIMESTAMP);
+		}
+	}
+
+	/**
+	 * File times are stored as UTC wall-clock values, truncated to the column's
+	 * microseconds so they compare equal to the file's time when read back.
+	 */
+	private static LocalDateTime toUtc(Instant instant) {
+		return instant != null ? LocalDateTime.ofInstant(instant.truncatedTo(ChronoUnit.MICROS), ZoneOffset.UTC)
+				: null;
+	}
+
+	private static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+		if (value != null) {
+			ps.setLong(index, value);
+		} else {
+			ps.setNull(index, Types.BIGINT);
+		}
+	}
+}
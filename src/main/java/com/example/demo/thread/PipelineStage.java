@@ -0,0 +1,283 @@
+package com.example.demo.thread;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One stage of a run's pipeline: a bounded queue drained by a fixed number of
+ * workers. The stage before it blocks in {@link #submit} while the queue is
+ * full, so a slow stage holds back the ones feeding it instead of letting work
+ * pile up in memory; {@link #getQueueDepth()} shows where a run is waiting.
+ *
+ * The workers are either threads of the stage's own or, for a stage whose
+ * capacity is shared by every run on the node (the copy workers), tasks on a
+ * shared executor. A shared-executor worker handles one item per task, so the
+ * executor interleaves the items of concurrent runs instead of letting one run
+ * hold its threads.
+ *
+ * A producer that has to wait blocks through {@link ForkJoinPool#managedBlock},
+ * so when it is a worker of a shared fork/join pool (the directory scanner),
+ * the pool can start a spare worker and keep other runs' tasks moving while
+ * this run's stage is full.
+ *
+ * Items that are never handled because a producer or {@link #close()} was
+ * interrupted are counted in {@link #getDroppedCount()}.
+ */
+public class PipelineStage<T> implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(PipelineStage.class);
+
+	// Queued by close() once per thread after the last item
+	private static final Object END_OF_INPUT = new Object();
+
+	private final String name;
+	private final Consumer<T> handler;
+	private final BlockingQueue<Object> queue;
+	private final Thread[] threads; // null when the workers run on a shared executor
+	private final Executor executor; // null when the stage has its own threads
+	private final int maxWorkers;
+	private final AtomicInteger activeWorkers = new AtomicInteger(0);
+	private final Object idleMonitor = new Object();
+	private final LongAdder submitted = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private volatile boolean closed;
+
+	/** A stage with {@code threadCount} threads of its own. */
+	public PipelineStage(String name, int threadCount, int queueCapacity, Consumer<T> handler) {
+		this.name = name;
+		this.handler = handler;
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+		this.executor = null;
+		this.maxWorkers = Math.max(1, threadCount);
+		this.threads = new Thread[maxWorkers];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(this::drain, name + "-" + (i + 1));
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+
+	/** A stage whose items are handled on {@code executor}, at most {@code maxWorkers} at a time. */
+	public PipelineStage(String name, Executor executor, int maxWorkers, int queueCapacity, Consumer<T> handler) {
+		this.name = name;
+		this.handler = handler;
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+		this.executor = executor;
+		this.maxWorkers = Math.max(1, maxWorkers);
+		this.threads = null;
+	}
+
+	/** Queues an item, waiting for space while the stage is behind. */
+	public void submit(T item) {
+		if (closed) {
+			submitted.increment();
+			handle(item); // Late producer; the stage workers are gone
+			return;
+		}
+		if (!queue.offer(item)) {
+			try {
+				ForkJoinPool.managedBlock(new QueuePut(item));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				dropped.increment();
+				logger.error("Interrupted while queueing work for {}, the item is dropped", name);
+				return;
+			}
+		}
+		submitted.increment();
+		if (executor != null) {
+			startWorkers();
+		}
+	}
+
+	/** Items waiting for a worker. */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	public long getSubmittedCount() {
+		return submitted.sum();
+	}
+
+	/** Items the handler has finished with, successfully or not. */
+	public long getCompletedCount() {
+		return completed.sum();
+	}
+
+	/** Items that were submitted but will never be handled. */
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	/** Waits until every queued item has been handled, then stops the stage workers. */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			if (threads == null) {
+				synchronized (idleMonitor) {
+					while (!queue.isEmpty() || activeWorkers.get() > 0) {
+						idleMonitor.wait();
+					}
+				}
+				return;
+			}
+			for (int i = 0; i < threads.length; i++) {
+				queue.put(END_OF_INPUT);
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			abandon();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Interrupted {@link #close()}: queued items are dropped, the stage's own
+	 * threads are interrupted, and the items already being handled are waited
+	 * for, so no worker outlives the stage.
+	 */
+	private void abandon() {
+		long before = dropped.sum();
+		dropQueued();
+		if (threads != null) {
+			for (Thread thread : threads) {
+				thread.interrupt();
+			}
+			for (Thread thread : threads) {
+				while (thread.isAlive()) {
+					try {
+						thread.join();
+					} catch (InterruptedException e) {
+						// Already stopping; the caller restores the interrupt
+					}
+				}
+			}
+		} else {
+			synchronized (idleMonitor) {
+				while (activeWorkers.get() > 0) {
+					try {
+						idleMonitor.wait();
+					} catch (InterruptedException e) {
+						// Already stopping; the caller restores the interrupt
+					}
+				}
+			}
+		}
+		dropQueued(); // Put by producers that were waiting for space
+		logger.error("Interrupted while waiting for {} to finish, {} queued items dropped", name,
+				dropped.sum() - before);
+	}
+
+	private void dropQueued() {
+		Object item;
+		while ((item = queue.poll()) != null) {
+			if (item != END_OF_INPUT) {
+				dropped.increment();
+			}
+		}
+	}
+
+	/** Waits for queue space on behalf of a producer, see {@link #submit}. */
+	private final class QueuePut implements ForkJoinPool.ManagedBlocker {
+		private final Object item;
+		private boolean queued;
+
+		private QueuePut(Object item) {
+			this.item = item;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			return queued || (queued = queue.offer(item));
+		}
+
+		@Override
+		public boolean block() throws InterruptedException {
+			if (!queued) {
+				queue.put(item);
+				queued = true;
+			}
+			return true;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void handle(Object item) {
+		try {
+			handler.accept((T) item);
+		} catch (RuntimeException e) {
+			logger.error("{} failed on an item: {}", name, e.getMessage(), e);
+		} finally {
+			completed.increment();
+		}
+	}
+
+	private void drain() {
+		while (true) {
+			Object item;
+			try {
+				item = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (item == END_OF_INPUT) {
+				return;
+			}
+			handle(item);
+		}
+	}
+
+	/** Shared-executor stages: starts workers for queued items, up to {@code maxWorkers}. */
+	private void startWorkers() {
+		while (!queue.isEmpty()) {
+			int active = activeWorkers.get();
+			if (active >= maxWorkers) {
+				return; // A finishing worker starts the next one
+			}
+			if (activeWorkers.compareAndSet(active, active + 1)) {
+				try {
+					executor.execute(this::handleNext);
+				} catch (RejectedExecutionException e) {
+					// The executor is shutting down; handle the item here so close() can return
+					logger.error("{} could not start a worker: {}", name, e.getMessage());
+					handleNext();
+				}
+			}
+		}
+	}
+
+	private void handleNext() {
+		try {
+			Object item = queue.poll();
+			if (item != null) {
+				handle(item);
+			}
+		} finally {
+			activeWorkers.decrementAndGet();
+		}
+		// Checked after the decrement, so an item queued meanwhile is never left without a worker
+		startWorkers();
+		if (activeWorkers.get() == 0) {
+			synchronized (idleMonitor) {
+				idleMonitor.notifyAll();
+			}
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.example.demo.thread;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * GZIP output stream that uses a caller-owned {@link Deflater}, {@link CRC32}
+ * and output buffer instead of allocating new ones (and a native zlib stream)
+ * for every file. The output is the same as {@link java.util.zip.GZIPOutputStream}.
+ *
+ * Closing the stream finishes the GZIP member and closes the underlying
+ * stream, but leaves the deflater usable; the owner resets it before the next
+ * file and ends it when it is discarded.
+ */
+public class PooledGzipOutputStream extends DeflaterOutputStream {
+
+	private static final int GZIP_MAGIC = 0x8b1f;
+	private static final byte[] HEADER = { (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0,
+			0, 0, 0, 0 };
+
+	private final CRC32 crc;
+	private boolean finished = false;
+
+	/**
+	 * @param deflater a deflater created with {@code nowrap = true}, already reset
+	 * @param crc      a checksum instance, already reset
+	 * @param buffer   buffer for compressed output
+	 */
+	public PooledGzipOutputStream(OutputStream out, Deflater deflater, CRC32 crc, byte[] buffer) throws IOException {
+		super(out, deflater, 1, false);
+		this.buf = buffer; // Replace the 1-byte buffer allocated by the superclass
+		this.crc = crc;
+		out.write(HEADER);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		super.write(b, off, len);
+		crc.update(b, off, len);
+	}
+
+	@Override
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		super.finish();
+		writeTrailer();
+		finished = true;
+	}
+
+	private void writeTrailer() throws IOException {
+		byte[] trailer = new byte[8];
+		writeInt((int) crc.getValue(), trailer, 0);
+		writeInt((int) def.getBytesRead(), trailer, 4); // Uncompressed size modulo 2^32
+		out.write(trailer);
+	}
+
+	private static void writeInt(int value, byte[] target, int offset) {
+		target[offset] = (byte) value;
+		target[offset + 1] = (byte) (value >> 8);
+		target[offset + 2] = (byte) (value >> 16);
+		target[offset + 3] = (byte) (value >> 24);
+	}
+}
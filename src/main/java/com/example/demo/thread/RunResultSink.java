@@ -0,0 +1,114 @@
+package com.example.demo.thread;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Collects the per-file metadata produced by one run. Appends are lock-free
+ * and constant time, so many workers can add results concurrently.
+ *
+ * Synchronous requests keep every result to return it in the response.
+ * Submitted previews keep up to a configured number of results for the run
+ * status, since nothing else records what a preview found; other submitted
+ * runs only keep the counters, their results are in file_meta_data.
+ * Streaming requests pass each result to a listener as soon as it is produced
+ * and keep nothing.
+ */
+public class RunResultSink {
+
+	private final Queue<Map<String, Object>> results; // null when results are not retained
+	private final Consumer<Map<String, Object>> listener; // may be null
+	private final int maxRetained;
+	private final AtomicInteger retained = new AtomicInteger(0);
+	private final LongAdder droppedResults = new LongAdder(); // Not retained because maxRetained was reached
+	private final LongAdder unsavedMetadataRows = new LongAdder();
+	private final LongAdder droppedFiles = new LongAdder();
+
+	private final LongAdder totalFiles = new LongAdder();
+	private final LongAdder archivedFiles = new LongAdder();
+	private final LongAdder failedFiles = new LongAdder();
+	private final LongAdder unchangedFiles = new LongAdder();
+
+	public RunResultSink(boolean retainResults) {
+		this(retainResults, null);
+	}
+
+	public RunResultSink(boolean retainResults, Consumer<Map<String, Object>> listener) {
+		this(retainResults ? Integer.MAX_VALUE : 0, listener);
+	}
+
+	/** Keeps at most {@code maxRetained} results; the rest are only counted. */
+	public RunResultSink(int maxRetained, Consumer<Map<String, Object>> listener) {
+		this.results = maxRetained > 0 ? new ConcurrentLinkedQueue<>() : null;
+		this.maxRetained = maxRetained;
+		this.listener = listener;
+	}
+
+	public void add(Map<String, Object> metadata) {
+		totalFiles.increment();
+		Object isArchived = metadata.get("isArchived");
+		if ("Y".equals(isArchived)) {
+			archivedFiles.increment();
+		} else if ("N".equals(isArchived)) {
+			failedFiles.increment();
+		}
+		if (results != null) {
+			if (retained.incrementAndGet() <= maxRetained) {
+				results.add(metadata);
+			} else {
+				droppedResults.increment();
+			}
+		}
+		if (listener != null) {
+			listener.accept(metadata);
+		}
+	}
+
+	/** Counts a file skipped by an incremental run because it has not changed. */
+	public void addUnchanged() {
+		unchangedFiles.increment();
+	}
+
+	/** Files whose metadata row the run's writer could not insert. */
+	public void addUnsavedMetadataRows(long count) {
+		unsavedMetadataRows.add(count);
+	}
+
+	/** Files an interrupted run dropped from its pipeline without handling them. */
+	public void addDroppedFiles(long count) {
+		droppedFiles.add(count);
+	}
+
+	public List<Map<String, Object>> getResults() {
+		if (results == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(new ArrayList<>(results));
+	}
+
+	public Map<String, Object> getSummary() {
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("totalFiles", totalFiles.sum());
+		summary.put("archivedFiles", archivedFiles.sum());
+		summary.put("failedFiles", failedFiles.sum());
+		summary.put("unchangedFiles", unchangedFiles.sum());
+		if (droppedFiles.sum() > 0) {
+			summary.put("droppedFiles", droppedFiles.sum());
+		}
+		if (unsavedMetadataRows.sum() > 0) {
+			summary.put("metadataRowsNotSaved", unsavedMetadataRows.sum());
+		}
+		if (droppedResults.sum() > 0) {
+			summary.put("resultsNotRetained", droppedResults.sum());
+		}
+		return summary;
+	}
+}
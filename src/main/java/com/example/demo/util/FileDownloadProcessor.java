@@ -26,12 +26,13 @@ public class FileDownloadProcessor {
     /** Only process & return if file is .enc or .gz, else throw exception */
     public Resource processIfNeeded(String targetPath) throws Exception {
         Path filePath = Paths.get(targetPath);
+        Path storedPath = resolveStoredPath(filePath);
 
-        if (!Files.isRegularFile(filePath) || !Files.exists(filePath)) {
+        if (!Files.isRegularFile(storedPath) || !Files.exists(storedPath)) {
             throw new FileNotFoundException("File not found or is a directory: " + targetPath);
         }
 
-        byte[] fileBytes = Files.readAllBytes(filePath);
+        byte[] fileBytes = Files.readAllBytes(storedPath);
         boolean processed = false;
 
         // Decrypt if .enc
@@ -71,6 +72,22 @@ public class FileDownloadProcessor {
 
         return new ByteArrayResource(fileBytes);
     }
+
+    /**
+     * Path holding the bytes of a target file. Deduplicated targets that could not
+     * be hardlinked exist only as a metadata row pointing into the content store.
+     */
+    public Path resolveStoredPath(Path filePath) {
+        if (Files.exists(filePath) || filePath.getParent() == null || filePath.getFileName() == null) {
+            return filePath;
+        }
+        return fileDetailsStore
+                .findFirstByTargetPathAndTargetFileNameOrderByCreatedAtDesc(filePath.getParent().toString(),
+                        filePath.getFileName().toString())
+                .map(FileMetaData::getContentRef)
+                .map(Paths::get)
+                .orElse(filePath);
+    }
 }
 
 
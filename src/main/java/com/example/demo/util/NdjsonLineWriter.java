@@ -0,0 +1,144 @@
+package com.example.demo.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes one JSON document per line (NDJSON) to a response stream. The run's
+ * persist threads call {@link #write} concurrently; it only queues the value,
+ * and a dedicated writer thread serializes the queued values and writes them,
+ * flushing whenever the queue runs empty. A slow client therefore never holds
+ * up the run: when the queue is full, the line is dropped and counted in
+ * {@link #getDroppedLineCount()} instead of waiting.
+ *
+ * {@link #close()} returns once every queued line is written; lines written
+ * after that, such as the final summary, go straight to the stream. If the
+ * client goes away, the first failure is logged and later lines are discarded
+ * so the run itself can finish.
+ */
+public class NdjsonLineWriter implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(NdjsonLineWriter.class);
+
+	private static final AtomicInteger writerNumber = new AtomicInteger(0);
+
+	// Queued by close() after the last line; identity marks the end of the stream
+	private static final Object END_OF_STREAM = new Object();
+
+	private final OutputStream outputStream;
+	private final ObjectMapper objectMapper;
+	private final BlockingQueue<Object> queue;
+	private final Thread writerThread;
+	private final LongAdder droppedLines = new LongAdder();
+	private volatile boolean closed;
+	private boolean broken = false; // Only touched by the writer thread until close() has joined it
+
+	public NdjsonLineWriter(OutputStream outputStream, ObjectMapper objectMapper, int queueCapacity) {
+		this.outputStream = outputStream;
+		this.objectMapper = objectMapper;
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+		this.writerThread = new Thread(this::drain, "ndjson-writer-" + writerNumber.incrementAndGet());
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	/** Queues a line without waiting; drops it when the client is too far behind. */
+	public void write(Object value) {
+		if (closed) {
+			synchronized (this) {
+				writeLine(value);
+				flush();
+			}
+			return;
+		}
+		if (!queue.offer(value)) {
+			droppedLines.increment();
+		}
+	}
+
+	/** Lines that were not streamed because the client could not keep up. */
+	public long getDroppedLineCount() {
+		return droppedLines.sum();
+	}
+
+	/** Waits until every queued line is written, then stops the writer thread. */
+	@Override
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		boolean interrupted = false;
+		while (true) {
+			try {
+				queue.put(END_OF_STREAM);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		while (writerThread.isAlive()) {
+			try {
+				writerThread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void drain() {
+		while (true) {
+			Object value;
+			try {
+				value = queue.take();
+			} catch (InterruptedException e) {
+				continue; // Only close() ends the writer
+			}
+			if (value == END_OF_STREAM) {
+				flush();
+				return;
+			}
+			writeLine(value);
+			if (queue.isEmpty()) {
+				flush(); // Caught up: let the client see what it has so far
+			}
+		}
+	}
+
+	private void writeLine(Object value) {
+		if (broken) {
+			return;
+		}
+		try {
+			outputStream.write(objectMapper.writeValueAsBytes(value));
+			outputStream.write('\n');
+		} catch (IOException e) {
+			broken = true;
+			logger.warn("Stopped streaming NDJSON response: {}", e.getMessage());
+		}
+	}
+
+	private void flush() {
+		if (broken) {
+			return;
+		}
+		try {
+			outputStream.flush();
+		} catch (IOException e) {
+			broken = true;
+			logger.warn("Stopped streaming NDJSON response: {}", e.getMessage());
+		}
+	}
+}
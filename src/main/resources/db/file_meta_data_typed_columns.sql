@@ -0,0 +1,44 @@
+-- Converts file_meta_data from string date columns to typed datetime(6) columns
+-- and adds the lookup indexes declared on the FileMetaData entity (MySQL 8).
+--
+-- ddl-auto=update adds missing columns and indexes but never changes the type of
+-- an existing column, so tables created by earlier versions must be converted
+-- once with this script, with the application stopped. New installations do not
+-- need it.
+--
+-- Old values:
+--   created_at         LocalDateTime.toString() in server local time, e.g. 2025-06-01T10:15:30.123456789
+--   creation_date      FileTime.toString() in UTC, e.g. 2025-06-01T08:15:30.123456Z
+--   modification_date  same as creation_date
+-- New values keep the same meaning (created_at local, file times UTC) at microsecond precision.
+
+ALTER TABLE file_meta_data
+    ADD COLUMN created_at_typed DATETIME(6) NULL,
+    ADD COLUMN creation_date_typed DATETIME(6) NULL,
+    ADD COLUMN modification_date_typed DATETIME(6) NULL;
+
+-- LEFT(..., 26) keeps 'yyyy-MM-dd HH:mm:ss.ffffff'; shorter values (no fraction) are kept whole
+UPDATE file_meta_data
+SET created_at_typed        = CAST(LEFT(REPLACE(created_at, 'T', ' '), 26) AS DATETIME(6)),
+    creation_date_typed     = CAST(LEFT(REPLACE(REPLACE(creation_date, 'Z', ''), 'T', ' '), 26) AS DATETIME(6)),
+    modification_date_typed = CAST(LEFT(REPLACE(REPLACE(modification_date, 'Z', ''), 'T', ' '), 26) AS DATETIME(6));
+
+ALTER TABLE file_meta_data
+    DROP COLUMN created_at,
+    DROP COLUMN creation_date,
+    DROP COLUMN modification_date;
+
+ALTER TABLE file_meta_data
+    RENAME COLUMN created_at_typed TO created_at,
+    RENAME COLUMN creation_date_typed TO creation_date,
+    RENAME COLUMN modification_date_typed TO modification_date;
+
+-- Created by ddl-auto=update as well; listed here so the conversion can run in one go.
+-- The string columns are varchar(255), which fits InnoDB's 3072-byte key limit in utf8mb4.
+CREATE INDEX idx_fmd_target_created ON file_meta_data (target_path, target_file_name, created_at);
+CREATE INDEX idx_fmd_run_archived ON file_meta_data (run_id, is_archived);
+CREATE INDEX idx_fmd_file_path ON file_meta_data (file_path);
+
+-- The per-KB archive tables (edms_filearchive_metadata_<kbId>) are not converted:
+-- they keep varchar dates, and the archive step formats the typed columns into
+-- the same text with DATE_FORMAT when it copies a run's rows into them.
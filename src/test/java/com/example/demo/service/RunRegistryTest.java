@@ -0,0 +1,120 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.config.FileCopyProperties;
+import com.example.demo.dto.RunStatus;
+import com.example.demo.thread.FilesCopyThread;
+import com.example.demo.thread.RunResultSink;
+
+class RunRegistryTest {
+
+	private static final BigDecimal RUN_ID = new BigDecimal("10042");
+
+	private final FileCopyProperties properties = new FileCopyProperties();
+	private final RunRegistry registry = new RunRegistry();
+
+	@BeforeEach
+	void setUp() {
+		properties.getRuns().setRetainedFinished(2);
+		ReflectionTestUtils.setField(registry, "properties", properties);
+	}
+
+	@Test
+	void unknownRunHasNoStatus() {
+		assertNull(registry.get(RUN_ID));
+	}
+
+	@Test
+	void runMovesFromSubmittedToCompletedWithLiveCounters() {
+		registry.register(RUN_ID, "copy", "/src", "/dst");
+		assertEquals(RunRegistry.STATE_SUBMITTED, registry.get(RUN_ID).getState());
+
+		FilesCopyThread copyThread = mock(FilesCopyThread.class);
+		when(copyThread.getFilesSubmitted()).thenReturn(10L);
+		when(copyThread.getFilesCompleted()).thenReturn(4L);
+		when(copyThread.getStageQueueDepths()).thenReturn(Map.of("copy", 6L));
+		registry.markRunning(RUN_ID, copyThread);
+
+		RunStatus running = registry.get(RUN_ID);
+		assertEquals(RunRegistry.STATE_RUNNING, running.getState());
+		assertNotNull(running.getStartedAt());
+		assertEquals(10, running.getFilesSubmitted());
+		assertEquals(4, running.getFilesCompleted());
+		assertEquals(Map.of("copy", 6L), running.getStageQueueDepths());
+
+		when(copyThread.getFilesCompleted()).thenReturn(10L);
+		registry.markCompleted(RUN_ID, Map.of("totalFiles", 10L), null);
+
+		RunStatus completed = registry.get(RUN_ID);
+		assertEquals(RunRegistry.STATE_COMPLETED, completed.getState());
+		assertEquals(10, completed.getFilesCompleted()); // Final counters are taken when the run finishes
+		assertNull(completed.getStageQueueDepths());
+		assertEquals(Map.of("totalFiles", 10L), completed.getSummary());
+		assertNotNull(completed.getFinishedAt());
+	}
+
+	@Test
+	void failedRunKeepsItsError() {
+		registry.register(RUN_ID, "purgeonly", "/src", null);
+		registry.markFailed(RUN_ID, "Source path does not exist");
+
+		RunStatus status = registry.get(RUN_ID);
+		assertEquals(RunRegistry.STATE_FAILED, status.getState());
+		assertEquals("Source path does not exist", status.getError());
+		assertNull(status.getSummary());
+	}
+
+	@Test
+	void statusIsACopy() {
+		registry.register(RUN_ID, "copy", "/src", "/dst");
+		registry.get(RUN_ID).setState("TAMPERED");
+
+		assertEquals(RunRegistry.STATE_SUBMITTED, registry.get(RUN_ID).getState());
+	}
+
+	@Test
+	void oldestFinishedRunsAreEvicted() {
+		BigDecimal running = new BigDecimal("1");
+		registry.register(running, "copy", "/src", "/dst");
+		for (int i = 2; i <= 5; i++) {
+			BigDecimal runId = new BigDecimal(i);
+			registry.register(runId, "copy", "/src", "/dst");
+			registry.markCompleted(runId, Map.of(), null);
+		}
+
+		assertNull(registry.get(new BigDecimal("2")));
+		assertNull(registry.get(new BigDecimal("3")));
+		assertNotNull(registry.get(new BigDecimal("4")));
+		assertNotNull(registry.get(new BigDecimal("5")));
+		assertNotNull(registry.get(running)); // Runs still going are never evicted
+	}
+
+	@Test
+	void previewResultsAreKeptUpToTheLimit() {
+		RunResultSink sink = new RunResultSink(2, null);
+		for (int i = 0; i < 5; i++) {
+			sink.add(Map.of("fileName", "f" + i));
+		}
+		registry.register(RUN_ID, "preview", "/src", null);
+		registry.markCompleted(RUN_ID, sink.getSummary(), sink.getResults());
+
+		RunStatus status = registry.get(RUN_ID);
+		List<Map<String, Object>> results = status.getResults();
+		assertEquals(2, results.size());
+		assertEquals(5L, status.getSummary().get("totalFiles"));
+		assertEquals(3L, status.getSummary().get("resultsNotRetained"));
+	}
+}
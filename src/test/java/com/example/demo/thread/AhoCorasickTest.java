@@ -0,0 +1,88 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class AhoCorasickTest {
+
+	@Test
+	void findsAnyLiteral() {
+		AhoCorasick automaton = new AhoCorasick(List.of("he", "she", "his", "hers"));
+
+		assertTrue(automaton.containsAny("ushers"));
+		assertTrue(automaton.containsAny("this"));
+		assertTrue(automaton.containsAny("he"));
+		assertFalse(automaton.containsAny("hi"));
+		assertFalse(automaton.containsAny(""));
+	}
+
+	@Test
+	void followsFailureLinksAfterPartialMatch() {
+		// "abcd" fails at 'x', and "bcx" must still be found through the failure link of "abc"
+		AhoCorasick automaton = new AhoCorasick(List.of("abcd", "bcx"));
+
+		assertTrue(automaton.containsAny("abcx"));
+		assertFalse(automaton.containsAny("abcabc"));
+	}
+
+	@Test
+	void findsLiteralThatIsSuffixOfAnother() {
+		AhoCorasick automaton = new AhoCorasick(List.of("archive", "hive"));
+
+		assertTrue(automaton.containsAny("beehive"));
+		assertTrue(automaton.containsAny("xarchivx-hive"));
+	}
+
+	@Test
+	void findsLiteralNestedInsideLongerPartialMatch() {
+		AhoCorasick automaton = new AhoCorasick(List.of("abcde", "c"));
+
+		assertTrue(automaton.containsAny("abcx"));
+	}
+
+	@Test
+	void emptyLiteralMatchesEveryText() {
+		AhoCorasick automaton = new AhoCorasick(List.of(""));
+
+		assertTrue(automaton.containsAny(""));
+		assertTrue(automaton.containsAny("anything"));
+	}
+
+	@Test
+	void noLiteralsMatchNothing() {
+		assertFalse(new AhoCorasick(List.of()).containsAny("anything"));
+	}
+
+	@Test
+	void agreesWithStringContains() {
+		Random random = new Random(42);
+		for (int round = 0; round < 200; round++) {
+			List<String> literals = new ArrayList<>();
+			for (int i = 0; i < 1 + random.nextInt(6); i++) {
+				literals.add(randomText(random, 1 + random.nextInt(4)));
+			}
+			AhoCorasick automaton = new AhoCorasick(literals);
+			for (int i = 0; i < 50; i++) {
+				String text = randomText(random, random.nextInt(20));
+				boolean expected = literals.stream().anyMatch(text::contains);
+				assertEquals(expected, automaton.containsAny(text), () -> literals + " in " + text);
+			}
+		}
+	}
+
+	/** Small alphabet, so literals overlap and share prefixes often. */
+	private static String randomText(Random random, int length) {
+		StringBuilder text = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			text.append((char) ('a' + random.nextInt(3)));
+		}
+		return text.toString();
+	}
+}
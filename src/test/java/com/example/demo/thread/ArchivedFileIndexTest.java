@@ -0,0 +1,129 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+class ArchivedFileIndexTest {
+
+	// A modification time with nanoseconds, which the datetime(6) column truncates to microseconds
+	private static final Instant MODIFIED = Instant.parse("2024-03-01T10:15:30.123456789Z");
+
+	@TempDir
+	Path dir;
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final List<Object[]> rows = new ArrayList<>();
+
+	@Test
+	void likePrefixMatchesOnlyPathsBelowTheRoot() {
+		assertEquals("/data/a/%", ArchivedFileIndex.likePrefix(new File("/data/a")));
+		assertEquals("/data/a/%", ArchivedFileIndex.likePrefix(new File("/data/a/")));
+		assertEquals("/%", ArchivedFileIndex.likePrefix(new File("/")));
+	}
+
+	@Test
+	void likePrefixEscapesWildcards() {
+		assertEquals("/data/in\\_box/50\\%/%", ArchivedFileIndex.likePrefix(new File("/data/in_box/50%")));
+	}
+
+	@Test
+	void queryBindsRootsAndSubtreePatterns() throws Exception {
+		loadIndex();
+
+		ArgumentCaptor<PreparedStatementCreator> creator = ArgumentCaptor.forClass(PreparedStatementCreator.class);
+		verify(jdbcTemplate).query(creator.capture(), any(RowCallbackHandler.class));
+		PreparedStatement statement = mock(PreparedStatement.class);
+		Connection connection = mock(Connection.class);
+		when(connection.prepareStatement(any())).thenReturn(statement);
+		creator.getValue().createPreparedStatement(connection);
+
+		verify(statement).setString(1, "/src");
+		verify(statement).setString(2, "/src/%");
+		verify(statement).setString(3, "/dst");
+		verify(statement).setString(4, "/dst/%");
+	}
+
+	@Test
+	void unchangedOnlyWhenLatestRowIsArchivedWithSameSizeAndTime() throws Exception {
+		Path same = file("same.bin", 10);
+		Path resized = file("resized.bin", 20);
+		Path touched = file("touched.bin", 10);
+		Path failedLast = file("failed.bin", 10);
+		Path unknown = file("unknown.bin", 10);
+		row(same, 10, MODIFIED, "Y");
+		row(resized, 10, MODIFIED, "Y");
+		row(touched, 10, MODIFIED.minusSeconds(60), "Y");
+		row(failedLast, 10, MODIFIED, "Y");
+		row(failedLast, 10, MODIFIED, "N"); // Rows arrive oldest first, the failed copy is the latest
+
+		ArchivedFileIndex index = loadIndex();
+
+		assertEquals(4, index.size());
+		assertTrue(index.isUnchanged(same.toFile(), attributes(same)));
+		assertFalse(index.isUnchanged(resized.toFile(), attributes(resized)));
+		assertFalse(index.isUnchanged(touched.toFile(), attributes(touched)));
+		assertFalse(index.isUnchanged(failedLast.toFile(), attributes(failedLast)));
+		assertFalse(index.isUnchanged(unknown.toFile(), attributes(unknown)));
+	}
+
+	private ArchivedFileIndex loadIndex() {
+		doAnswer(invocation -> {
+			RowCallbackHandler handler = invocation.getArgument(1);
+			for (Object[] row : rows) {
+				ResultSet rs = mock(ResultSet.class);
+				when(rs.getString("file_path")).thenReturn((String) row[0]);
+				when(rs.getLong("size")).thenReturn((Long) row[1]);
+				when(rs.getObject("modification_date", LocalDateTime.class)).thenReturn((LocalDateTime) row[2]);
+				when(rs.getString("is_archived")).thenReturn((String) row[3]);
+				handler.processRow(rs);
+			}
+			return null;
+		}).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+		return ArchivedFileIndex.load(jdbcTemplate, new File("/src"), new File("/dst"));
+	}
+
+	/** A row as the metadata writer stores it: UTC wall-clock time truncated to microseconds. */
+	private void row(Path file, long size, Instant modified, String isArchived) {
+		rows.add(new Object[] { file.toAbsolutePath().toString(), size,
+				LocalDateTime.ofInstant(modified, ZoneOffset.UTC).withNano(modified.getNano() / 1000 * 1000),
+				isArchived });
+	}
+
+	private Path file(String name, int size) throws IOException {
+		Path file = Files.write(dir.resolve(name), new byte[size]);
+		Files.setLastModifiedTime(file, FileTime.from(MODIFIED));
+		return file;
+	}
+
+	private static BasicFileAttributes attributes(Path file) throws IOException {
+		return Files.readAttributes(file, BasicFileAttributes.class);
+	}
+}
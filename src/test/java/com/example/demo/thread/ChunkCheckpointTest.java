@@ -0,0 +1,139 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChunkCheckpointTest {
+
+	private static final long SIZE = 3 * 1024;
+	private static final long MODIFIED = 1_700_000_000_000L;
+	private static final long CHUNK_SIZE = 1024;
+	private static final String ALGORITHM = "SHA-256";
+
+	private static final byte[] DIGEST_0 = { 0x01, 0x02, 0x03 };
+	private static final byte[] DIGEST_2 = { (byte) 0xca, (byte) 0xfe };
+
+	@TempDir
+	Path dir;
+
+	private Path source;
+	private Path target;
+
+	@BeforeEach
+	void createFiles() throws IOException {
+		source = Files.writeString(dir.resolve("source.bin"), "source");
+		target = Files.writeString(dir.resolve("target.bin"), "partial");
+	}
+
+	@Test
+	void firstAttemptStartsFresh() throws IOException {
+		try (ChunkCheckpoint checkpoint = open(SIZE, MODIFIED, CHUNK_SIZE, ALGORITHM)) {
+			assertFalse(checkpoint.isResumed());
+			assertNull(checkpoint.completedDigest(0));
+		}
+		assertTrue(ChunkCheckpoint.exists(target));
+	}
+
+	@Test
+	void matchingCheckpointResumesCompletedChunks() throws IOException {
+		recordChunks();
+
+		try (ChunkCheckpoint checkpoint = open(SIZE, MODIFIED, CHUNK_SIZE, ALGORITHM)) {
+			assertTrue(checkpoint.isResumed());
+			assertArrayEquals(DIGEST_0, checkpoint.completedDigest(0));
+			assertNull(checkpoint.completedDigest(1));
+			assertArrayEquals(DIGEST_2, checkpoint.completedDigest(2));
+		}
+	}
+
+	@Test
+	void resumedCheckpointKeepsAppending() throws IOException {
+		recordChunks();
+		try (ChunkCheckpoint checkpoint = open(SIZE, MODIFIED, CHUNK_SIZE, ALGORITHM)) {
+			checkpoint.recordCompleted(1, DIGEST_0);
+		}
+
+		try (ChunkCheckpoint checkpoint = open(SIZE, MODIFIED, CHUNK_SIZE, ALGORITHM)) {
+			assertTrue(checkpoint.isResumed());
+			assertArrayEquals(DIGEST_0, checkpoint.completedDigest(1));
+			assertArrayEquals(DIGEST_2, checkpoint.completedDigest(2));
+		}
+	}
+
+	@Test
+	void changedSourceDiscardsCheckpoint() throws IOException {
+		recordChunks();
+		assertNotResumed(SIZE + 1, MODIFIED, CHUNK_SIZE, ALGORITHM);
+
+		recordChunks();
+		assertNotResumed(SIZE, MODIFIED + 1, CHUNK_SIZE, ALGORITHM);
+	}
+
+	@Test
+	void changedChunkLayoutOrAlgorithmDiscardsCheckpoint() throws IOException {
+		recordChunks();
+		assertNotResumed(SIZE, MODIFIED, CHUNK_SIZE * 2, ALGORITHM);
+
+		recordChunks();
+		assertNotResumed(SIZE, MODIFIED, CHUNK_SIZE, "MD5");
+	}
+
+	@Test
+	void missingTargetDiscardsCheckpoint() throws IOException {
+		recordChunks();
+		Files.delete(target);
+
+		assertNotResumed(SIZE, MODIFIED, CHUNK_SIZE, ALGORITHM);
+	}
+
+	@Test
+	void unreadableCheckpointStartsFresh() throws IOException {
+		recordChunks();
+		String header = Files.readAllLines(ChunkCheckpoint.pathFor(target), StandardCharsets.UTF_8).get(0);
+		Files.writeString(ChunkCheckpoint.pathFor(target), header + "\nchunk 0 not-hex\n");
+
+		assertNotResumed(SIZE, MODIFIED, CHUNK_SIZE, ALGORITHM);
+	}
+
+	@Test
+	void completeRemovesSidecar() throws IOException {
+		ChunkCheckpoint checkpoint = open(SIZE, MODIFIED, CHUNK_SIZE, ALGORITHM);
+		checkpoint.recordCompleted(0, DIGEST_0);
+		checkpoint.complete();
+
+		assertFalse(ChunkCheckpoint.exists(target));
+		assertNotResumed(SIZE, MODIFIED, CHUNK_SIZE, ALGORITHM);
+	}
+
+	/** Leaves a checkpoint with chunks 0 and 2 done, as an interrupted copy would. */
+	private void recordChunks() throws IOException {
+		Files.deleteIfExists(ChunkCheckpoint.pathFor(target));
+		try (ChunkCheckpoint checkpoint = open(SIZE, MODIFIED, CHUNK_SIZE, ALGORITHM)) {
+			checkpoint.recordCompleted(0, DIGEST_0);
+			checkpoint.recordCompleted(2, DIGEST_2);
+		}
+	}
+
+	private void assertNotResumed(long size, long modified, long chunkSize, String algorithm) throws IOException {
+		try (ChunkCheckpoint checkpoint = open(size, modified, chunkSize, algorithm)) {
+			assertFalse(checkpoint.isResumed());
+			assertNull(checkpoint.completedDigest(0));
+			assertNull(checkpoint.completedDigest(2));
+		}
+	}
+
+	private ChunkCheckpoint open(long size, long modified, long chunkSize, String algorithm) throws IOException {
+		return ChunkCheckpoint.open(source, target, size, modified, chunkSize, algorithm);
+	}
+}
@@ -0,0 +1,199 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChunkedFileCopierTest {
+
+	// The copier never uses chunks smaller than its 1 MB I/O buffer
+	private static final int CHUNK_SIZE = 1024 * 1024;
+	private static final int CHUNKS = 6;
+	private static final String ALGORITHM = "SHA-256";
+
+	@TempDir
+	Path dir;
+
+	private Path source;
+	private Path target;
+	private byte[] content;
+	private ChunkedFileCopier copier;
+
+	@BeforeEach
+	void createSource() throws IOException {
+		content = new byte[(CHUNKS - 1) * CHUNK_SIZE + 12345]; // Last chunk is short
+		new Random(7).nextBytes(content);
+		source = Files.write(dir.resolve("source.bin"), content);
+		target = dir.resolve("target.bin");
+	}
+
+	@AfterEach
+	void shutdown() {
+		if (copier != null) {
+			copier.shutdown();
+		}
+	}
+
+	@Test
+	void appliesOnlyFromTheThreshold() {
+		copier = new ChunkedFileCopier(100, CHUNK_SIZE, 1);
+		assertFalse(copier.appliesTo(99));
+		assertTrue(copier.appliesTo(100));
+
+		ChunkedFileCopier disabled = new ChunkedFileCopier(0, CHUNK_SIZE, 1);
+		assertFalse(disabled.appliesTo(Long.MAX_VALUE));
+		disabled.shutdown();
+	}
+
+	@Test
+	void chunkSizeIsAtLeastTheBuffer() {
+		copier = new ChunkedFileCopier(1, 4096, 1);
+		assertEquals(CHUNK_SIZE, copier.getChunkSizeBytes());
+	}
+
+	@Test
+	void copiesEveryRangeAndCombinesTheirDigests() throws Exception {
+		copier = new ChunkedFileCopier(1, CHUNK_SIZE, 3);
+		MessageDigest fileDigest = MessageDigest.getInstance(ALGORITHM);
+
+		assertEquals(content.length, copier.copy(source, target, fileDigest));
+
+		assertArrayEquals(content, Files.readAllBytes(target));
+		assertArrayEquals(expectedFileDigest(), fileDigest.digest());
+		assertFalse(ChunkCheckpoint.exists(target));
+	}
+
+	@Test
+	void failedRangeStopsItsSiblingsWithoutClosingTheTarget() throws Exception {
+		FailingCopier failing = new FailingCopier(2L * CHUNK_SIZE);
+		copier = failing;
+
+		IOException failure = assertThrows(IOException.class,
+				() -> copier.copy(source, target, MessageDigest.getInstance(ALGORITHM)));
+
+		assertTrue(failure.getMessage().contains("disk full"), failure.getMessage());
+		assertEquals(0, failing.running.get()); // No range is still writing once copy() has failed
+		assertTrue(failing.errors.stream().noneMatch(e -> e instanceof ClosedChannelException), failing.errors::toString);
+
+		// Every range the checkpoint holds was fully written; the failed one is missing
+		try (ChunkCheckpoint checkpoint = openCheckpoint()) {
+			assertTrue(checkpoint.isResumed());
+			assertNull(checkpoint.completedDigest(2));
+			for (int i = 0; i < CHUNKS; i++) {
+				byte[] recorded = checkpoint.completedDigest(i);
+				if (recorded != null) {
+					assertArrayEquals(rangeDigest(i), recorded, "chunk " + i);
+				}
+			}
+		}
+	}
+
+	@Test
+	void resumeCopiesOnlyTheMissingRanges() throws Exception {
+		copier = new FailingCopier(2L * CHUNK_SIZE);
+		assertThrows(IOException.class, () -> copier.copy(source, target, MessageDigest.getInstance(ALGORITHM)));
+		copier.shutdown();
+		int recorded;
+		try (ChunkCheckpoint checkpoint = openCheckpoint()) {
+			recorded = (int) IntStream.range(0, CHUNKS)
+					.filter(i -> checkpoint.completedDigest(i) != null).count();
+		}
+
+		CountingCopier resumed = new CountingCopier();
+		copier = resumed;
+		MessageDigest fileDigest = MessageDigest.getInstance(ALGORITHM);
+		assertEquals(content.length, copier.copy(source, target, fileDigest));
+
+		assertEquals(CHUNKS - recorded, resumed.ranges.get());
+		assertArrayEquals(content, Files.readAllBytes(target));
+		assertArrayEquals(expectedFileDigest(), fileDigest.digest());
+		assertFalse(ChunkCheckpoint.exists(target));
+	}
+
+	private ChunkCheckpoint openCheckpoint() throws IOException {
+		return ChunkCheckpoint.open(source, target, content.length, Files.getLastModifiedTime(source).toMillis(),
+				CHUNK_SIZE, ALGORITHM);
+	}
+
+	private byte[] rangeDigest(int index) throws NoSuchAlgorithmException {
+		int from = index * CHUNK_SIZE;
+		int to = Math.min(content.length, from + CHUNK_SIZE);
+		return MessageDigest.getInstance(ALGORITHM).digest(Arrays.copyOfRange(content, from, to));
+	}
+
+	/** The digest of the range digests, in file order. */
+	private byte[] expectedFileDigest() throws NoSuchAlgorithmException {
+		MessageDigest combined = MessageDigest.getInstance(ALGORITHM);
+		for (int i = 0; i < CHUNKS; i++) {
+			combined.update(rangeDigest(i));
+		}
+		return combined.digest();
+	}
+
+	/** Fails the range at {@code failingStart} once the others are under way. */
+	private static class FailingCopier extends ChunkedFileCopier {
+		private final long failingStart;
+		private final AtomicInteger running = new AtomicInteger();
+		private final List<Throwable> errors = new CopyOnWriteArrayList<>();
+
+		FailingCopier(long failingStart) {
+			super(1, CHUNK_SIZE, 3);
+			this.failingStart = failingStart;
+		}
+
+		@Override
+		byte[] copyRange(FileChannel in, FileChannel out, long start, long length, String algorithm,
+				BooleanSupplier aborted) throws IOException, NoSuchAlgorithmException {
+			running.incrementAndGet();
+			try {
+				if (start == failingStart) {
+					throw new IOException("disk full");
+				}
+				return super.copyRange(in, out, start, length, algorithm, aborted);
+			} catch (IOException e) {
+				errors.add(e);
+				throw e;
+			} finally {
+				running.decrementAndGet();
+			}
+		}
+	}
+
+	private static class CountingCopier extends ChunkedFileCopier {
+		private final AtomicInteger ranges = new AtomicInteger();
+
+		CountingCopier() {
+			super(1, CHUNK_SIZE, 3);
+		}
+
+		@Override
+		byte[] copyRange(FileChannel in, FileChannel out, long start, long length, String algorithm,
+				BooleanSupplier aborted) throws IOException, NoSuchAlgorithmException {
+			ranges.incrementAndGet();
+			return super.copyRange(in, out, start, length, algorithm, aborted);
+		}
+	}
+}
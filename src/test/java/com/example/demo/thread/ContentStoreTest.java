@@ -0,0 +1,98 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ContentStoreTest {
+
+	private static final String CHECKSUM = "ab12cd";
+
+	@TempDir
+	Path dir;
+
+	private ContentStore store;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		store = new ContentStore(dir);
+	}
+
+	@Test
+	void objectsAreNamedByAlgorithmAndChecksum() {
+		assertEquals(dir.resolve(".cas/SHA-256/ab/ab12cd"), store.objectPath("SHA-256", CHECKSUM, false));
+		assertEquals(dir.resolve(".cas/MD5/ab/ab12cd.gz"), store.objectPath("MD5", CHECKSUM, true));
+	}
+
+	@Test
+	void missingObjectIsNotStored() {
+		assertNull(store.storedChecksum(store.objectPath("SHA-256", CHECKSUM, false), CHECKSUM, 5, false));
+	}
+
+	@Test
+	void publishedObjectIsVerifiedBySidecarAndSize() throws IOException {
+		Path object = publish(CHECKSUM, "hello", false);
+
+		assertEquals(CHECKSUM, store.storedChecksum(object, CHECKSUM, 5, false));
+		assertNull(store.storedChecksum(object, CHECKSUM, 6, false));
+		assertNull(store.storedChecksum(object, "ab99", 5, false)); // Sidecar names other content
+	}
+
+	@Test
+	void objectWithoutSidecarIsNotTrustedOnSizeAlone() throws IOException {
+		Path object = store.objectPath("SHA-256", CHECKSUM, false);
+		Files.createDirectories(object.getParent());
+		Files.writeString(object, "jello"); // Same size as the content, different bytes
+
+		assertNull(store.storedChecksum(object, CHECKSUM, 5, false));
+	}
+
+	@Test
+	void objectChangedAfterPublishingIsNotReused() throws IOException {
+		Path object = publish(CHECKSUM, "hello", false);
+		Files.writeString(object, "jello"); // e.g. written through one of its hardlinks
+		Files.setLastModifiedTime(object, FileTime.from(Instant.now().plusSeconds(5)));
+
+		assertNull(store.storedChecksum(object, CHECKSUM, 5, false));
+	}
+
+	@Test
+	void compressedObjectReportsTheChecksumOfItsStoredBytes() throws IOException {
+		Path object = publish("ff00", "gzip bytes", true);
+
+		assertEquals("ff00", store.storedChecksum(object, CHECKSUM, 5, true));
+	}
+
+	@Test
+	void linkReplacesTargetAndStaleCheckpoint() throws IOException {
+		Path object = publish(CHECKSUM, "hello", false);
+		Path target = Files.writeString(dir.resolve("target.txt"), "old");
+		Files.writeString(ChunkCheckpoint.pathFor(target), "stale");
+
+		assertTrue(store.link(target, object));
+
+		assertTrue(Files.isSameFile(target, object));
+		assertFalse(ChunkCheckpoint.exists(target));
+	}
+
+	private Path publish(String storedChecksum, String content, boolean compressed) throws IOException {
+		Path temp = store.newTempFile();
+		Files.writeString(temp, content);
+		Files.setLastModifiedTime(temp, FileTime.from(Instant.now().minusSeconds(5)));
+		Path object = store.objectPath("SHA-256", CHECKSUM, compressed);
+		store.publish(temp, object, storedChecksum);
+		assertFalse(Files.exists(temp));
+		return object;
+	}
+}
@@ -0,0 +1,80 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class CopyContextPoolTest {
+
+	@Test
+	void releasedContextIsReused() {
+		CopyContextPool pool = new CopyContextPool(8192, 2);
+		CopyContext context = pool.borrow();
+		pool.release(context);
+
+		assertSame(context, pool.borrow());
+	}
+
+	@Test
+	void keepsAtMostMaxIdleContextsAfterABurst() {
+		CopyContextPool pool = new CopyContextPool(8192, 2);
+		List<CopyContext> burst = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			burst.add(pool.borrow());
+		}
+		burst.forEach(pool::release);
+
+		// Only the first two releases were kept; every further borrow is a new context
+		Map<CopyContext, Boolean> reused = new IdentityHashMap<>();
+		for (int i = 0; i < 4; i++) {
+			CopyContext context = pool.borrow();
+			if (burst.stream().anyMatch(c -> c == context)) {
+				reused.put(context, true);
+			}
+		}
+		assertEquals(2, reused.size());
+	}
+
+	@Test
+	void digestOnlyUseAllocatesNoCopyBuffer() throws NoSuchAlgorithmException {
+		CopyContext context = new CopyContextPool(256 * 1024, 1).borrow();
+		context.sourceDigest("SHA-256").update(new byte[] { 1, 2, 3 });
+
+		assertFalse(context.hasBuffer());
+		assertEquals(256 * 1024, context.getBuffer().length);
+		assertTrue(context.hasBuffer());
+	}
+
+	@Test
+	void channelBufferIsAClearedViewOfTheCopyBuffer() {
+		CopyContext context = new CopyContext(4096);
+		ByteBuffer first = context.getChannelBuffer();
+		first.put(new byte[100]);
+
+		ByteBuffer second = context.getChannelBuffer();
+		assertSame(context.getBuffer(), second.array());
+		assertEquals(0, second.position());
+		assertEquals(4096, second.remaining());
+	}
+
+	@Test
+	void digestsAreResetBetweenFiles() throws NoSuchAlgorithmException {
+		CopyContext context = new CopyContext(4096);
+		context.sourceDigest("SHA-256").update(new byte[] { 1, 2, 3 });
+		String empty = CopyContext.toHex(context.sourceDigest("SHA-256").digest());
+
+		assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", empty);
+		assertNotSame(context.sourceDigest("SHA-256"), context.targetDigest("SHA-256"));
+	}
+}
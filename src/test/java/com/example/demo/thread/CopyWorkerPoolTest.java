@@ -0,0 +1,125 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class CopyWorkerPoolTest {
+
+	private CopyWorkerPool pool;
+
+	@AfterEach
+	void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void platformModeRunsAtMostWorkerThreadsAtOnce() throws InterruptedException {
+		pool = CopyWorkerPool.platform(3);
+
+		assertEquals(CopyWorkerPool.MODE_PLATFORM, pool.getMode());
+		assertEquals(3, pool.getMaxWorkers());
+		assertEquals(3, peakConcurrency(pool, 20));
+	}
+
+	@Test
+	void virtualModeCapsFilesInFlight() throws InterruptedException {
+		// More fallback threads than permits, so only the semaphore can hold concurrency at 2
+		pool = CopyWorkerPool.virtual(2, 6);
+
+		assertEquals(CopyWorkerPool.MODE_VIRTUAL, pool.getMode());
+		assertEquals(2, pool.getMaxWorkers());
+		assertTrue(peakConcurrency(pool, 20) <= 2);
+	}
+
+	@Test
+	void virtualModeFallbackNeverExceedsFallbackThreads() throws InterruptedException {
+		// A large in-flight limit must not start one OS thread per file when virtual threads are missing
+		pool = CopyWorkerPool.virtual(10_000, 3);
+
+		int peak = peakConcurrency(pool, 30);
+		if (Runtime.version().feature() < 21) {
+			assertEquals(3, peak);
+		}
+	}
+
+	@Test
+	void submittingNeverRunsTheTaskOnTheCaller() throws InterruptedException {
+		pool = CopyWorkerPool.platform(1);
+		Thread caller = Thread.currentThread();
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(50);
+		AtomicInteger ranOnCaller = new AtomicInteger();
+
+		// The only worker is busy, so every further task has to wait in the pool's queue
+		pool.execute(() -> await(release));
+		for (int i = 0; i < 50; i++) {
+			pool.execute(() -> {
+				if (Thread.currentThread() == caller) {
+					ranOnCaller.incrementAndGet();
+				}
+				done.countDown();
+			});
+		}
+		release.countDown();
+
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(0, ranOnCaller.get());
+	}
+
+	@Test
+	void shutdownWaitsForQueuedTasks() {
+		pool = CopyWorkerPool.platform(2);
+		AtomicInteger completed = new AtomicInteger();
+		for (int i = 0; i < 10; i++) {
+			pool.execute(() -> {
+				sleep(10);
+				completed.incrementAndGet();
+			});
+		}
+		pool.shutdown();
+
+		assertEquals(10, completed.get());
+	}
+
+	/** Runs {@code tasks} tasks that overlap for a while and returns how many ran at the same time. */
+	static int peakConcurrency(CopyWorkerPool pool, int tasks) throws InterruptedException {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger peak = new AtomicInteger();
+		CountDownLatch done = new CountDownLatch(tasks);
+		for (int i = 0; i < tasks; i++) {
+			pool.execute(() -> {
+				peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+				sleep(20);
+				running.decrementAndGet();
+				done.countDown();
+			});
+		}
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		return peak.get();
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.thread.CriteriaMatcher.Action;
+import com.example.demo.thread.CriteriaMatcher.MatchType;
+
+class CriteriaMatcherTest {
+
+	@Test
+	void emptyMatcherMatchesEverything() {
+		assertTrue(CriteriaMatcher.EMPTY.isEmpty());
+		assertTrue(CriteriaMatcher.EMPTY.matches("report", "report.pdf"));
+		assertTrue(CriteriaMatcher.EMPTY.matchesRoot());
+	}
+
+	@Test
+	void anyIncludeIsEnough() {
+		CriteriaMatcher matcher = new CriteriaMatcher.Builder()
+				.add(Action.INCLUDE, MatchType.STARTS_WITH, "inv")
+				.add(Action.INCLUDE, MatchType.STARTS_WITH, "invoice-")
+				.add(Action.INCLUDE, MatchType.ENDS_WITH, "_final")
+				.add(Action.INCLUDE, MatchType.CONTAINS, "2024")
+				.build();
+
+		assertFalse(matcher.isEmpty());
+		assertTrue(matcher.matches("invoice-7", "invoice-7.pdf"));
+		assertTrue(matcher.matches("report_final", "report_final.pdf"));
+		assertTrue(matcher.matches("q1-2024-summary", "q1-2024-summary.pdf"));
+		assertFalse(matcher.matches("in", "in.pdf")); // Shorter than every prefix
+		assertFalse(matcher.matches("summary", "summary.pdf"));
+	}
+
+	@Test
+	void excludeWinsOverInclude() {
+		CriteriaMatcher matcher = new CriteriaMatcher.Builder()
+				.add(Action.INCLUDE, MatchType.STARTS_WITH, "invoice")
+				.add(Action.EXCLUDE, MatchType.CONTAINS, "draft")
+				.build();
+
+		assertTrue(matcher.matches("invoice-7", "invoice-7.pdf"));
+		assertFalse(matcher.matches("invoice-draft", "invoice-draft.pdf"));
+	}
+
+	@Test
+	void excludesAloneAcceptEverythingElse() {
+		CriteriaMatcher matcher = new CriteriaMatcher.Builder()
+				.add(Action.EXCLUDE, MatchType.ENDS_WITH, "~")
+				.build();
+
+		assertTrue(matcher.matches("notes", "notes.txt"));
+		assertFalse(matcher.matches("notes~", "notes~"));
+	}
+
+	@Test
+	void globMustMatchWholeText() {
+		CriteriaMatcher matcher = new CriteriaMatcher.Builder()
+				.add(Action.INCLUDE, MatchType.GLOB, "*.{pdf,docx}")
+				.add(Action.EXCLUDE, MatchType.GLOB, "tmp_*")
+				.build();
+
+		assertTrue(matcher.matches("report", "report.pdf"));
+		assertTrue(matcher.matches("letter", "letter.docx"));
+		assertFalse(matcher.matches("report", "report.pdf.bak"));
+		assertFalse(matcher.matches("tmp_report", "tmp_report.pdf"));
+	}
+
+	@Test
+	void regexIsSearchedIgnoringCase() {
+		CriteriaMatcher matcher = new CriteriaMatcher.Builder()
+				.add(Action.INCLUDE, MatchType.REGEX, "^INV-\\d{4}\\.")
+				.add(Action.INCLUDE, MatchType.REGEX, "backup")
+				.build();
+
+		assertTrue(matcher.matches("inv-2024", "inv-2024.pdf"));
+		assertTrue(matcher.matches("old-backup-3", "old-backup-3.zip"));
+		assertFalse(matcher.matches("inv-24", "inv-24.pdf"));
+	}
+
+	@Test
+	void regexAlternativesDoNotLeakIntoEachOther() {
+		// Joined as (?:a|b)|(?:c), so the anchor stays with its own alternatives
+		CriteriaMatcher matcher = new CriteriaMatcher.Builder()
+				.add(Action.INCLUDE, MatchType.REGEX, "^a|^b")
+				.add(Action.INCLUDE, MatchType.REGEX, "z$")
+				.build();
+
+		assertTrue(matcher.matches("b1", "b1"));
+		assertTrue(matcher.matches("xz", "xz"));
+		assertFalse(matcher.matches("xb", "xb"));
+	}
+
+	@Test
+	void backreferencesKeepTheirOwnGroups() {
+		// Joined, the second \\1 would refer to the first regex's group and "bb" would not match
+		CriteriaMatcher matcher = new CriteriaMatcher.Builder()
+				.add(Action.INCLUDE, MatchType.REGEX, "^(a)\\1")
+				.add(Action.INCLUDE, MatchType.REGEX, "^(b)\\1")
+				.build();
+
+		assertTrue(matcher.matches("aa", "aa"));
+		assertTrue(matcher.matches("bb", "bb"));
+		assertFalse(matcher.matches("ba", "ba"));
+	}
+
+	@Test
+	void namedGroupsMayShareANameAcrossRegexes() {
+		CriteriaMatcher matcher = new CriteriaMatcher.Builder()
+				.add(Action.INCLUDE, MatchType.REGEX, "(?<year>19\\d\\d)-\\k<year>")
+				.add(Action.INCLUDE, MatchType.REGEX, "(?<year>20\\d\\d)")
+				.add(Action.EXCLUDE, MatchType.REGEX, "(?<!x)tmp")
+				.build();
+
+		assertTrue(matcher.matches("1999-1999", "1999-1999.pdf"));
+		assertTrue(matcher.matches("report-2024", "report-2024.pdf"));
+		assertFalse(matcher.matches("1999-1998", "1999-1998.pdf"));
+		assertFalse(matcher.matches("tmp-2024", "tmp-2024.pdf"));
+		assertTrue(matcher.matches("xtmp-2024", "xtmp-2024.pdf"));
+	}
+
+	@Test
+	void globsAgreeWithThePathMatcher() {
+		List<String> globs = List.of("*.pdf", "**/*.pdf", "a?c", "[!a-c]*", "[-a-c]x", "{x,y}*.txt", "a\\*b",
+				"dir/*", "**", "*", "report(1).{doc,docx}", "a+b^c$d", "[^a]b", "x}y,z");
+		List<String> texts = List.of("a.pdf", "dir/a.pdf", "dir/sub/a.pdf", "abc", "a/c", "dx", "-x", "bx",
+				"x1.txt", "y.txt", "z.txt", "a*b", "axb", "dir/file", "dir/sub/file", "", "report(1).doc",
+				"report(1).docx", "report1.doc", "a+b^c$d", "^b", "ab", "x}y,z");
+		for (String glob : globs) {
+			PathMatcher expected = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+			CriteriaMatcher matcher = new CriteriaMatcher.Builder().add(Action.INCLUDE, MatchType.GLOB, glob).build();
+			for (String text : texts) {
+				assertEquals(expected.matches(Paths.get(text)), matcher.matches(text, text), () -> glob + " on " + text);
+			}
+		}
+	}
+
+	@Test
+	void literalsAndPatternsUseTheirOwnText() {
+		CriteriaMatcher matcher = new CriteriaMatcher.Builder()
+				.add(Action.INCLUDE, MatchType.ENDS_WITH, "pdf")
+				.build();
+
+		// endswith sees the name without extension
+		assertFalse(matcher.matches("report", "report.pdf"));
+	}
+
+	@Test
+	void invalidPatternsAreRejected() {
+		CriteriaMatcher.Builder builder = new CriteriaMatcher.Builder();
+
+		assertThrows(IllegalArgumentException.class, () -> builder.add(Action.INCLUDE, MatchType.REGEX, "(unclosed"));
+		assertThrows(IllegalArgumentException.class, () -> builder.add(Action.INCLUDE, MatchType.GLOB, "{a,b"));
+		assertTrue(builder.build().isEmpty());
+	}
+
+	@Test
+	void rootMatchesOnlySeparatorLiterals() {
+		CriteriaMatcher includeRoot = new CriteriaMatcher.Builder()
+				.add(Action.INCLUDE, MatchType.CONTAINS, "/")
+				.build();
+		CriteriaMatcher includeOther = new CriteriaMatcher.Builder()
+				.add(Action.INCLUDE, MatchType.CONTAINS, "projects")
+				.build();
+		CriteriaMatcher excludeRoot = new CriteriaMatcher.Builder()
+				.add(Action.EXCLUDE, MatchType.STARTS_WITH, "\\")
+				.build();
+
+		assertTrue(includeRoot.matchesRoot());
+		assertFalse(includeOther.matchesRoot());
+		assertFalse(excludeRoot.matchesRoot());
+	}
+}
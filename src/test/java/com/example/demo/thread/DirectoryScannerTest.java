@@ -0,0 +1,207 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.demo.dto.FileFilters;
+import com.example.demo.dto.update.FolderPathFilterCriteria;
+
+class DirectoryScannerTest {
+
+	@TempDir
+	Path root;
+
+	private final DirectoryScanner scanner = new DirectoryScanner(2);
+	private final ConcurrentLinkedQueue<FileSnapshot> found = new ConcurrentLinkedQueue<>();
+
+	@AfterEach
+	void shutdown() {
+		scanner.shutdown();
+	}
+
+	@Test
+	void rejectedNamesNeverReachTheSink() throws IOException {
+		file("a.pdf");
+		file("b.tmp");
+		file("sub/c.pdf");
+		file("sub/d.png");
+		file("reports.v2/e.pdf"); // A directory the extension filter rejects is still entered
+		FileFilters filters = new FileFilters();
+		filters.setFileTypes(List.of("pdf"));
+		filters.setFileTypeIncExc("include");
+
+		scanner.scan(root, FilterPlan.compile(filters), found::add);
+
+		assertEquals(Set.of("a.pdf", "sub/c.pdf", "reports.v2/e.pdf"), foundPaths());
+		for (FileSnapshot snapshot : found) {
+			assertNotNull(snapshot.attributes());
+		}
+	}
+
+	@Test
+	void rejectedNamesInPrunedFoldersAreSkippedWithTheirFolder() throws IOException {
+		file("keep/a.pdf");
+		file("cache/b.pdf");
+		file("cache.png");
+		FileFilters filters = new FileFilters();
+		filters.setFileTypes(List.of("pdf"));
+		filters.setFileTypeIncExc("include");
+		filters.setFolderPathFilterCriteria(
+				List.of(new FolderPathFilterCriteria("FOLDER_PATH", "cache", "exclude", "contains")));
+
+		scanner.scan(root, FilterPlan.compile(filters), found::add);
+
+		assertEquals(Set.of("keep/a.pdf"), foundPaths());
+	}
+
+	@Test
+	void findsFilesAtEveryDepth() throws IOException {
+		StringBuilder deep = new StringBuilder();
+		for (int depth = 0; depth < 200; depth++) {
+			deep.append("d").append(depth).append('/');
+		}
+		file("top.txt");
+		file("a/b/c/nested.txt");
+		file(deep + "deepest.txt");
+		Files.createDirectories(root.resolve("empty/also-empty"));
+
+		scanner.scan(root, FilterPlan.compile(null), found::add);
+
+		assertEquals(Set.of("top.txt", "a/b/c/nested.txt", deep + "deepest.txt"), foundPaths());
+	}
+
+	@Test
+	void symbolicLinkLoopIsSkipped() throws IOException {
+		file("a/b/inside.txt");
+		Files.createSymbolicLink(root.resolve("a/b/back-to-a"), root.resolve("a"));
+		Files.createSymbolicLink(root.resolve("a/b/dangling"), root.resolve("missing"));
+
+		scanner.scan(root, FilterPlan.compile(null), found::add);
+
+		// Neither followed forever nor reported as a file
+		assertEquals(Set.of("a/b/inside.txt"), foundPaths());
+	}
+
+	@Test
+	void linkToADirectoryOutsideTheTreeIsFollowed() throws IOException {
+		Path outside = Files.createDirectories(root.resolve("outside"));
+		Files.write(outside.resolve("linked.txt"), new byte[10]);
+		Path tree = Files.createDirectories(root.resolve("tree"));
+		Files.createSymbolicLink(tree.resolve("link"), outside);
+
+		scanner.scan(tree, FilterPlan.compile(null), found::add);
+
+		assertEquals(Set.of("tree/link/linked.txt"), foundPaths());
+	}
+
+	@Test
+	void fileRootIsReportedOnItsOwn() throws IOException {
+		Path single = file("single.txt");
+
+		scanner.scan(single, FilterPlan.compile(null), found::add);
+
+		assertEquals(Set.of("single.txt"), foundPaths());
+	}
+
+	@Test
+	void siblingSubtreesAreListedAtTheSameTime() throws Exception {
+		file("left/a.txt");
+		file("right/b.txt");
+		CountDownLatch bothReached = new CountDownLatch(2);
+
+		// Each sink call waits until the other subtree has reached the sink as well
+		Thread run = new Thread(() -> scanner.scan(root, FilterPlan.compile(null), snapshot -> {
+			bothReached.countDown();
+			await(bothReached);
+			found.add(snapshot);
+		}));
+		run.start();
+		run.join(10_000);
+
+		assertEquals(0, bothReached.getCount());
+		assertEquals(Set.of("left/a.txt", "right/b.txt"), foundPaths());
+	}
+
+	@Test
+	void blockedRunDoesNotHoldTheSharedPool() throws Exception {
+		DirectoryScanner singleThreaded = new DirectoryScanner(1);
+		try {
+			Path slowRoot = Files.createDirectories(root.resolve("slow"));
+			Files.write(slowRoot.resolve("a.txt"), new byte[10]);
+			Path fastRoot = Files.createDirectories(root.resolve("fast"));
+			Files.write(fastRoot.resolve("b.txt"), new byte[10]);
+			CountDownLatch slowBlocked = new CountDownLatch(1);
+			CountDownLatch release = new CountDownLatch(1);
+
+			// Waits like a full pipeline queue does, through managedBlock
+			Thread slowRun = new Thread(() -> singleThreaded.scan(slowRoot, FilterPlan.compile(null), snapshot -> {
+				slowBlocked.countDown();
+				await(release);
+			}));
+			slowRun.start();
+			assertTrue(slowBlocked.await(10, TimeUnit.SECONDS));
+
+			Thread fastRun = new Thread(() -> singleThreaded.scan(fastRoot, FilterPlan.compile(null), found::add));
+			fastRun.start();
+			fastRun.join(10_000);
+
+			assertFalse(fastRun.isAlive()); // Finished while the only scan thread's run was waiting
+			assertEquals(Set.of("fast/b.txt"), foundPaths());
+			release.countDown();
+			slowRun.join(10_000);
+			assertFalse(slowRun.isAlive());
+		} finally {
+			singleThreaded.shutdown();
+		}
+	}
+
+	private Set<String> foundPaths() {
+		Set<String> paths = new TreeSet<>();
+		for (FileSnapshot snapshot : found) {
+			paths.add(root.relativize(snapshot.getPath()).toString().replace('\\', '/'));
+		}
+		return paths;
+	}
+
+	private Path file(String relativePath) throws IOException {
+		Path file = root.resolve(relativePath);
+		Files.createDirectories(file.getParent());
+		return Files.write(file, new byte[10]);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+				@Override
+				public boolean block() throws InterruptedException {
+					latch.await();
+					return true;
+				}
+
+				@Override
+				public boolean isReleasable() {
+					return latch.getCount() == 0;
+				}
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
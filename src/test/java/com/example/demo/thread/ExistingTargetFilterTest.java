@@ -0,0 +1,92 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+class ExistingTargetFilterTest {
+
+	private static final int ROWS = 20_000;
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final List<String[]> rows = new ArrayList<>();
+
+	@Test
+	void everyLoadedTargetMightExist() {
+		for (int i = 0; i < ROWS; i++) {
+			rows.add(new String[] { "/dst/folder-" + (i % 100), "file-" + i + ".pdf" });
+		}
+
+		ExistingTargetFilter filter = loadFilter();
+
+		for (String[] row : rows) {
+			assertTrue(filter.mightContain(row[0], row[1]), () -> row[0] + "/" + row[1]);
+		}
+	}
+
+	@Test
+	void aboutOnePercentOfNewTargetsAreFalsePositives() {
+		for (int i = 0; i < ROWS; i++) {
+			rows.add(new String[] { "/dst/folder-" + (i % 100), "file-" + i + ".pdf" });
+		}
+
+		ExistingTargetFilter filter = loadFilter();
+
+		int falsePositives = 0;
+		int probes = 100_000;
+		for (int i = 0; i < probes; i++) {
+			if (filter.mightContain("/dst/folder-" + (i % 100), "new-" + i + ".pdf")) {
+				falsePositives++;
+			}
+		}
+		assertTrue(falsePositives < probes * 2 / 100, () -> "false positive rate too high");
+	}
+
+	@Test
+	void targetsCompareIgnoringCaseLikeTheDatabase() {
+		rows.add(new String[] { "/dst/Reports", "Q1.PDF" });
+
+		ExistingTargetFilter filter = loadFilter();
+
+		assertTrue(filter.mightContain("/DST/reports", "q1.pdf"));
+	}
+
+	@Test
+	void pathAndNameAreHashedAsAPair() {
+		rows.add(new String[] { "/dst/a/b", "c" });
+
+		ExistingTargetFilter filter = loadFilter();
+
+		assertFalse(filter.mightContain("/dst/a", "b/c"));
+	}
+
+	private ExistingTargetFilter loadFilter() {
+		when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), any(), any())).thenReturn((long) rows.size());
+		doAnswer(invocation -> {
+			RowCallbackHandler handler = invocation.getArgument(1);
+			for (String[] row : rows) {
+				ResultSet rs = mock(ResultSet.class);
+				when(rs.getString(1)).thenReturn(row[0]);
+				when(rs.getString(2)).thenReturn(row[1]);
+				handler.processRow(rs);
+			}
+			return null;
+		}).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+		return ExistingTargetFilter.load(jdbcTemplate, new File("/dst"));
+	}
+}
@@ -0,0 +1,73 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileChannelCopierTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void copiesBytesAndDigestsTheSource() throws IOException, NoSuchAlgorithmException {
+		byte[] content = randomBytes(3 * 1024 * 1024 + 17);
+		Path source = Files.write(dir.resolve("source.bin"), content);
+		Path target = dir.resolve("target.bin");
+
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		long transferred = FileChannelCopier.copy(source, target, digest);
+
+		assertEquals(content.length, transferred);
+		assertArrayEquals(content, Files.readAllBytes(target));
+		assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(content), digest.digest());
+	}
+
+	@Test
+	void emptyFileIsCopied() throws IOException, NoSuchAlgorithmException {
+		Path source = Files.write(dir.resolve("empty"), new byte[0]);
+		Path target = dir.resolve("empty.copy");
+
+		assertEquals(0, FileChannelCopier.copy(source, target, MessageDigest.getInstance("MD5")));
+		assertEquals(0, Files.size(target));
+	}
+
+	@Test
+	void replacingATargetNeverWritesThroughItsHardlinks() throws IOException, NoSuchAlgorithmException {
+		byte[] stored = randomBytes(1024);
+		Path object = Files.write(dir.resolve("object"), stored);
+		Path target = Files.createLink(dir.resolve("target.bin"), object);
+		Path source = Files.write(dir.resolve("source.bin"), randomBytes(2048));
+
+		FileChannelCopier.copy(source, target, MessageDigest.getInstance("SHA-256"));
+
+		assertArrayEquals(stored, Files.readAllBytes(object));
+		assertNotEquals(Files.size(object), Files.size(target));
+	}
+
+	@Test
+	void digestMatchesTheWholeFile() throws IOException, NoSuchAlgorithmException {
+		byte[] content = randomBytes(1024 * 1024 + 1);
+		Path source = Files.write(dir.resolve("source.bin"), content);
+
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		assertEquals(content.length, FileChannelCopier.digest(source, digest));
+		assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(content), digest.digest());
+	}
+
+	private static byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,254 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.demo.dto.FileFilters;
+import com.example.demo.repository.FileDetailsStore;
+
+class FileDetailsUpdateTest {
+
+	private static final BigDecimal RUN_ID = new BigDecimal("10042");
+
+	@TempDir
+	Path dir;
+
+	private Path sourceRoot;
+	private Path destinationRoot;
+	private final FileDetailsStore fileDetailsStore = mock(FileDetailsStore.class);
+	private final CopyContextPool copyContextPool = new CopyContextPool(8192, 2);
+
+	@BeforeEach
+	void setUp() throws IOException {
+		sourceRoot = Files.createDirectories(dir.resolve("src"));
+		destinationRoot = Files.createDirectories(dir.resolve("dst"));
+	}
+
+	@Test
+	void kernelCopyIsOnlySizeVerifiedWhenTheSourceIsKept() throws IOException {
+		Path source = sourceFile("report.bin", 5000);
+
+		Map<String, Object> result = transferAndPersist(source, "copy");
+
+		assertEquals("SIZE_VERIFIED", result.get("validationStatus"));
+		assertNull(result.get("targetChecksum"));
+		assertNotNull(result.get("sourceChecksum"));
+		assertEquals("Y", result.get("isArchived"));
+		assertTrue(Files.exists(source));
+		assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(destinationRoot.resolve("report.bin")));
+	}
+
+	@Test
+	void purgingRunHashesTheTargetBeforeDeletingTheSource() throws IOException {
+		Path source = sourceFile("report.bin", 5000);
+		byte[] content = Files.readAllBytes(source);
+
+		Map<String, Object> result = transferAndPersist(source, "copyandpurge");
+
+		assertEquals("Y", result.get("validationStatus"));
+		assertNotNull(result.get("targetChecksum"));
+		assertEquals(result.get("sourceChecksum"), result.get("targetChecksum"));
+		assertFalse(Files.exists(source));
+		assertArrayEquals(content, Files.readAllBytes(destinationRoot.resolve("report.bin")));
+	}
+
+	@Test
+	void failedCopyKeepsTheSource() throws IOException {
+		Path source = sourceFile("report.bin", 5000);
+		// A non-empty directory where the target should go cannot be replaced
+		Files.createDirectories(destinationRoot.resolve("report.bin").resolve("child"));
+
+		Map<String, Object> result = transferAndPersist(source, "copyandpurge");
+
+		assertEquals("N", result.get("validationStatus"));
+		assertEquals("N", result.get("isArchived"));
+		assertTrue(Files.exists(source));
+	}
+
+	@Test
+	void compressedCopiesReuseOneContextAndRoundTrip() throws IOException {
+		FileFilters filters = new FileFilters();
+		filters.setFileCompression("y");
+		for (int size : new int[] { 300_000, 1000 }) {
+			Path source = sourceFile("data-" + size + ".bin", size);
+
+			Map<String, Object> result = transferAndPersist(source, "copy", filters);
+
+			assertEquals("Y", result.get("validationStatus"));
+			try (InputStream in = new GZIPInputStream(
+					Files.newInputStream(destinationRoot.resolve("data-" + size + ".bin.gz")))) {
+				assertArrayEquals(Files.readAllBytes(source), in.readAllBytes());
+			}
+		}
+		// The second file borrowed the context the first one released
+		assertTrue(copyContextPool.borrow().hasBuffer());
+	}
+
+	@Test
+	void unchangedFileIsSkippedBeforeTheDestinationIsTouched() throws IOException {
+		Path source = Files.createDirectories(sourceRoot.resolve("nested")).resolve("report.bin");
+		Files.write(source, new byte[100]);
+		ArchivedFileIndex index = mock(ArchivedFileIndex.class);
+		when(index.isUnchanged(any(), any())).thenReturn(true);
+		RunResultSink resultSink = new RunResultSink(true);
+		RunContext runContext = new RunContext(RUN_ID, "copy", null, null, sourceRoot.toFile(),
+				destinationRoot.toFile(), fileDetailsStore, resultSink, copyContextPool, null, null);
+		runContext.setArchivedFileIndex(index);
+
+		assertFalse(new FileDetailsUpdate(source.toFile(), runContext).transfer());
+
+		assertEquals(1L, resultSink.getSummary().get("unchangedFiles"));
+		assertFalse(Files.exists(destinationRoot.resolve("nested"))); // No directory created for it
+	}
+
+	@Test
+	void duplicateContentIsLinkedWithoutWritingItAgain() throws IOException {
+		byte[] content = new byte[50_000];
+		new Random(1).nextBytes(content);
+		Path first = Files.write(sourceRoot.resolve("first.bin"), content);
+		Path second = Files.write(sourceRoot.resolve("second.bin"), content);
+		ContentStore contentStore = spy(new ContentStore(destinationRoot));
+
+		Map<String, Object> firstResult = transferAndPersist(first, "copy", null, contentStore);
+		Map<String, Object> secondResult = transferAndPersist(second, "copy", null, contentStore);
+
+		// Only the first file's content was written and published
+		verify(contentStore, times(1)).publish(any(), any(), any());
+		assertEquals("Y", secondResult.get("validationStatus"));
+		assertEquals(firstResult.get("sourceChecksum"), secondResult.get("targetChecksum"));
+		assertEquals(firstResult.get("contentRef"), secondResult.get("contentRef"));
+		assertTrue(Files.isSameFile(destinationRoot.resolve("first.bin"), destinationRoot.resolve("second.bin")));
+	}
+
+	@Test
+	void unverifiedObjectOfTheSameSizeIsWrittenAgain() throws IOException {
+		Path source = sourceFile("report.bin", 5000);
+		ContentStore contentStore = new ContentStore(destinationRoot);
+		Map<String, Object> stored = transferAndPersist(source, "copy", null, contentStore);
+		Path object = Path.of((String) stored.get("contentRef"));
+		// Replaced by same-sized garbage with no sidecar, e.g. by an older version of the store
+		Files.delete(object);
+		Files.delete(object.resolveSibling(object.getFileName() + ".sum"));
+		Files.write(object, new byte[5000]);
+
+		transferAndPersist(source, "copy", null, contentStore);
+
+		assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(object));
+		assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(destinationRoot.resolve("report.bin")));
+	}
+
+	@Test
+	void sameStoreRenameHappensOnlyWhenPersisting() throws IOException {
+		Path source = sourceFile("notes.txt", 5000); // .txt files are archived like any other
+		byte[] content = Files.readAllBytes(source);
+		RunResultSink resultSink = new RunResultSink(true);
+		FileDetailsUpdate task = new FileDetailsUpdate(source.toFile(), renamingRun(null, resultSink));
+
+		assertTrue(task.transfer());
+		assertTrue(Files.exists(source));
+		assertFalse(Files.exists(destinationRoot.resolve("notes.txt")));
+
+		task.persist();
+		assertFalse(Files.exists(source));
+		assertArrayEquals(content, Files.readAllBytes(destinationRoot.resolve("notes.txt")));
+		Map<String, Object> result = resultSink.getResults().get(0);
+		assertEquals("Y", result.get("validationStatus"));
+		assertEquals("Y", result.get("isArchived"));
+		assertEquals(result.get("sourceChecksum"), result.get("targetChecksum"));
+	}
+
+	@Test
+	void failedDuplicateRemovalKeepsTheSourceInPlace() throws IOException {
+		Path source = sourceFile("report.bin", 5000);
+		FileFilters filters = new FileFilters();
+		filters.setRunCheckDuplicate("Y");
+		when(fileDetailsStore.deleteAllByTargetPathAndTargetFileName(any(), any()))
+				.thenThrow(new IllegalStateException("database down"));
+		RunResultSink resultSink = new RunResultSink(true);
+
+		new FileDetailsUpdate(source.toFile(), renamingRun(filters, resultSink)).run();
+
+		assertTrue(Files.exists(source));
+		assertFalse(Files.exists(destinationRoot.resolve("report.bin")));
+		Map<String, Object> result = resultSink.getResults().get(0);
+		assertEquals("N", result.get("validationStatus"));
+		assertEquals("N", result.get("isArchived"));
+	}
+
+	@Test
+	void duplicateRowsAreOnlyDeletedWhenTheTargetMightHaveThem() throws IOException {
+		FileFilters filters = new FileFilters();
+		filters.setRunCheckDuplicate("Y");
+		ExistingTargetFilter existingTargets = mock(ExistingTargetFilter.class);
+		when(existingTargets.mightContain(any(), eq("new.bin"))).thenReturn(false);
+		when(existingTargets.mightContain(any(), eq("old.bin"))).thenReturn(true);
+
+		for (String name : new String[] { "new.bin", "old.bin" }) {
+			RunContext runContext = new RunContext(RUN_ID, "copy", filters, null, sourceRoot.toFile(),
+					destinationRoot.toFile(), fileDetailsStore, new RunResultSink(true), copyContextPool, null, null);
+			runContext.setExistingTargetFilter(existingTargets);
+			new FileDetailsUpdate(sourceFile(name, 100).toFile(), runContext).run();
+		}
+
+		// The new target never reaches the database, the one that might exist does
+		verify(fileDetailsStore, never()).deleteAllByTargetPathAndTargetFileName(any(), eq("new.bin"));
+		verify(fileDetailsStore).deleteAllByTargetPathAndTargetFileName(any(), eq("old.bin"));
+	}
+
+	private RunContext renamingRun(FileFilters filters, RunResultSink resultSink) {
+		RunContext runContext = new RunContext(RUN_ID, "copyandpurge", filters, null, sourceRoot.toFile(),
+				destinationRoot.toFile(), fileDetailsStore, resultSink, copyContextPool, null, null);
+		runContext.setSameFileStore(true);
+		return runContext;
+	}
+
+	private Map<String, Object> transferAndPersist(Path source, String activity) {
+		return transferAndPersist(source, activity, null);
+	}
+
+	private Map<String, Object> transferAndPersist(Path source, String activity, FileFilters filters) {
+		return transferAndPersist(source, activity, filters, null);
+	}
+
+	private Map<String, Object> transferAndPersist(Path source, String activity, FileFilters filters,
+			ContentStore contentStore) {
+		RunResultSink resultSink = new RunResultSink(true);
+		RunContext runContext = new RunContext(RUN_ID, activity, filters, null, sourceRoot.toFile(),
+				destinationRoot.toFile(), fileDetailsStore, resultSink, copyContextPool, null, null);
+		runContext.setContentStore(contentStore);
+		new FileDetailsUpdate(source.toFile(), runContext).run();
+		assertEquals(1, resultSink.getResults().size());
+		return resultSink.getResults().get(0);
+	}
+
+	private Path sourceFile(String name, int size) throws IOException {
+		byte[] content = new byte[size];
+		new Random(size).nextBytes(content);
+		return Files.write(sourceRoot.resolve(name), content);
+	}
+}
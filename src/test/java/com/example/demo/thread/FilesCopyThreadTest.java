@@ -0,0 +1,129 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.config.FileCopyProperties;
+import com.example.demo.dto.FileFilters;
+import com.example.demo.repository.FileDetailsStore;
+
+class FilesCopyThreadTest {
+
+	private static final BigDecimal RUN_ID = new BigDecimal("10042");
+
+	@TempDir
+	Path sourceRoot;
+	@TempDir
+	Path destinationRoot;
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final CopyWorkerPool workerPool = CopyWorkerPool.platform(1);
+	private final DirectoryScanner directoryScanner = new DirectoryScanner(1);
+
+	@AfterEach
+	void shutdown() {
+		workerPool.shutdown();
+		directoryScanner.shutdown();
+	}
+
+	@Test
+	void kbRowsAreCopiedByTheDatabaseInOneStatement() {
+		newRun("kb_1").run();
+
+		verify(jdbcTemplate).execute(startsWith("CREATE TABLE IF NOT EXISTS edms_filearchive_metadata_kb_1 ("));
+		ArgumentCaptor<String> insert = ArgumentCaptor.forClass(String.class);
+		verify(jdbcTemplate).update(insert.capture(), eq(RUN_ID));
+		assertTrue(insert.getValue().startsWith("INSERT INTO edms_filearchive_metadata_kb_1 ("));
+		assertTrue(insert.getValue().endsWith("FROM file_meta_data WHERE is_archived = 'Y' AND run_id = ?"));
+		// Nothing is read back into the JVM and written again row by row
+		verifyNoMoreInteractions(jdbcTemplate);
+	}
+
+	@Test
+	void kbTablesKeepTheirTextDates() {
+		newRun("kb_1").run();
+
+		ArgumentCaptor<String> insert = ArgumentCaptor.forClass(String.class);
+		verify(jdbcTemplate).update(insert.capture(), eq(RUN_ID));
+		// File times as UTC instants, created_at as local date-time, like the old string columns
+		assertTrue(insert.getValue().contains("DATE_FORMAT(creation_date, '%Y-%m-%dT%H:%i:%s.%fZ')"));
+		assertTrue(insert.getValue().contains("DATE_FORMAT(modification_date, '%Y-%m-%dT%H:%i:%s.%fZ')"));
+		assertTrue(insert.getValue().contains("DATE_FORMAT(created_at, '%Y-%m-%dT%H:%i:%s.%f')"));
+	}
+
+	@Test
+	void invalidKbIdIssuesNoStatement() {
+		newRun("kb_1; DROP TABLE file_meta_data").run();
+
+		verifyNoInteractions(jdbcTemplate);
+	}
+
+	@Test
+	void runWithoutKbIdSkipsTheKbStep() {
+		newRun(null).run();
+
+		verifyNoInteractions(jdbcTemplate);
+	}
+
+	@Test
+	void transformingRunUsesOnlyTheTransformStage() throws IOException {
+		Files.write(sourceRoot.resolve("a.txt"), new byte[1000]);
+		Files.write(sourceRoot.resolve("b.txt"), new byte[2000]);
+		FileFilters filters = new FileFilters();
+		filters.setFileCompression("y");
+		CopyWorkerPool copyWorkers = mock(CopyWorkerPool.class);
+		FilesCopyThread run = newRun("copy", filters, copyWorkers);
+
+		run.run();
+
+		// The shared copy workers are not even asked for their size
+		verifyNoInteractions(copyWorkers);
+		assertEquals(List.of("filter", "transform", "persist"), List.copyOf(run.getStageQueueDepths().keySet()));
+		assertEquals(2, run.getFilesCompleted());
+		assertTrue(Files.exists(destinationRoot.resolve("a.txt.gz")));
+		assertTrue(Files.exists(destinationRoot.resolve("b.txt.gz")));
+	}
+
+	@Test
+	void plainCopyRunUsesOnlyTheCopyStage() throws IOException {
+		Files.write(sourceRoot.resolve("a.txt"), new byte[1000]);
+		FilesCopyThread run = newRun("copy", new FileFilters(), workerPool);
+
+		run.run();
+
+		assertEquals(List.of("filter", "copy", "persist"), List.copyOf(run.getStageQueueDepths().keySet()));
+		assertEquals(1, run.getFilesCompleted());
+		assertTrue(Files.exists(destinationRoot.resolve("a.txt")));
+	}
+
+	private FilesCopyThread newRun(String kbId) {
+		FileFilters filters = new FileFilters();
+		filters.setKbId(kbId);
+		return newRun("preview", filters, workerPool);
+	}
+
+	private FilesCopyThread newRun(String activity, FileFilters filters, CopyWorkerPool copyWorkers) {
+		RunContext runContext = new RunContext(RUN_ID, activity, filters, null, sourceRoot.toFile(),
+				destinationRoot.toFile(), mock(FileDetailsStore.class), new RunResultSink(true),
+				new CopyContextPool(8192, 2), null, null);
+		return new FilesCopyThread(runContext, jdbcTemplate, copyWorkers, directoryScanner, new FileCopyProperties());
+	}
+}
@@ -0,0 +1,241 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.demo.dto.FileFilters;
+import com.example.demo.dto.update.FileNameFilterCriteria;
+import com.example.demo.dto.update.FolderPathFilterCriteria;
+
+class FilterPlanTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void nullFiltersAcceptEverything() throws IOException {
+		FilterPlan plan = FilterPlan.compile(null);
+
+		assertTrue(plan.accepts(file("report.pdf", 10)));
+		assertTrue(plan.acceptsDirectory(dir.toFile()));
+		assertFalse(plan.needsOwner());
+	}
+
+	@Test
+	void fileTypesIncludeIgnoringCase() throws IOException {
+		FileFilters filters = new FileFilters();
+		filters.setFileTypes(List.of("PDF", "txt"));
+		filters.setFileTypeIncExc("include");
+		FilterPlan plan = FilterPlan.compile(filters);
+
+		assertTrue(plan.accepts(file("report.pdf", 10)));
+		assertTrue(plan.accepts(file("NOTES.TXT", 10)));
+		assertFalse(plan.accepts(file("image.png", 10)));
+		assertFalse(plan.accepts(file("README", 10)));
+	}
+
+	@Test
+	void fileTypesExclude() throws IOException {
+		FileFilters filters = new FileFilters();
+		filters.setFileTypes(List.of("tmp"));
+		filters.setFileTypeIncExc("Exclude");
+		FilterPlan plan = FilterPlan.compile(filters);
+
+		assertFalse(plan.accepts(file("scratch.tmp", 10)));
+		assertTrue(plan.accepts(file("report.pdf", 10)));
+	}
+
+	@Test
+	void unknownFileTypeModeIsIgnored() throws IOException {
+		FileFilters filters = new FileFilters();
+		filters.setFileTypes(List.of("pdf"));
+		filters.setFileTypeIncExc("sometimes");
+		FilterPlan plan = FilterPlan.compile(filters);
+
+		assertTrue(plan.accepts(file("image.png", 10)));
+	}
+
+	@Test
+	void fileNameLiteralsMatchNameWithoutExtension() throws IOException {
+		FileFilters filters = new FileFilters();
+		filters.setFileNameFilterCriteria(List.of(nameCriteria("include", "startswith", "Invoice"),
+				nameCriteria("include", "endswith", "_final"), nameCriteria("exclude", "contains", "draft")));
+		FilterPlan plan = FilterPlan.compile(filters);
+
+		assertTrue(plan.accepts(file("invoice-2024.pdf", 10)));
+		assertTrue(plan.accepts(file("Report_FINAL.docx", 10)));
+		assertFalse(plan.accepts(file("invoice-draft.pdf", 10)));
+		assertFalse(plan.accepts(file("report.final", 10))); // The extension is not part of the name
+		assertFalse(plan.accepts(file("summary.pdf", 10)));
+	}
+
+	@Test
+	void invalidNameCriteriaAreSkipped() throws IOException {
+		FileFilters filters = new FileFilters();
+		filters.setFileNameFilterCriteria(List.of(new FileNameFilterCriteria("OWNER", "x", "include", "contains"),
+				nameCriteria("include", "contains", " "), nameCriteria("maybe", "contains", "report"),
+				nameCriteria("include", "sounds-like", "report"), nameCriteria("include", "regex", "(unclosed")));
+		FilterPlan plan = FilterPlan.compile(filters);
+
+		assertTrue(plan.accepts(file("anything.txt", 10)));
+	}
+
+	@Test
+	void folderPathCriteriaMatchParentPath() throws IOException {
+		FileFilters filters = new FileFilters();
+		filters.setFolderPathFilterCriteria(List.of(folderCriteria("include", null, "Projects"),
+				folderCriteria("exclude", "contains", "/projects/old")));
+		FilterPlan plan = FilterPlan.compile(filters);
+
+		assertTrue(plan.accepts(file("projects/new/plan.txt", 10)));
+		assertFalse(plan.accepts(file("projects/old/plan.txt", 10)));
+		assertFalse(plan.accepts(file("other/plan.txt", 10)));
+	}
+
+	@Test
+	void onlyContainsCriteriaPruneDirectories() throws IOException {
+		FileFilters filters = new FileFilters();
+		filters.setFolderPathFilterCriteria(List.of(folderCriteria("exclude", "contains", "cache"),
+				folderCriteria("include", "startswith", "/nowhere")));
+		FilterPlan plan = FilterPlan.compile(filters);
+
+		assertFalse(plan.acceptsDirectory(directory("build/Cache")));
+		// Fails the startswith include, but a subfolder could still be a match
+		assertTrue(plan.acceptsDirectory(directory("src")));
+	}
+
+	@Test
+	void nameFiltersNeedNoAttributes() {
+		FileFilters filters = new FileFilters();
+		filters.setFileTypes(List.of("pdf"));
+		filters.setFileTypeIncExc("include");
+		filters.setFileNameFilterCriteria(List.of(nameCriteria("exclude", "startswith", "tmp")));
+		FilterPlan plan = FilterPlan.compile(filters);
+
+		// Files that do not exist: a stat would fail
+		assertTrue(plan.acceptsName(FileSnapshot.of(dir.resolve("missing/report.pdf").toFile())));
+		assertFalse(plan.acceptsName(FileSnapshot.of(dir.resolve("missing/report.png").toFile())));
+		assertFalse(plan.acceptsName(FileSnapshot.of(dir.resolve("missing/tmp-report.pdf").toFile())));
+	}
+
+	@Test
+	void mayEnterIsTheDirectoryCheckForAnyPath() {
+		FileFilters filters = new FileFilters();
+		filters.setFolderPathFilterCriteria(List.of(folderCriteria("exclude", "contains", "cache")));
+		FilterPlan plan = FilterPlan.compile(filters);
+
+		assertFalse(plan.mayEnter(dir.resolve("build/cache").toFile()));
+		assertTrue(plan.mayEnter(dir.resolve("build/classes").toFile()));
+	}
+
+	@Test
+	void sizeLimitsAreInclusiveKilobytes() throws IOException {
+		FileFilters filters = new FileFilters();
+		filters.setSizeFromKB(2L);
+		filters.setSizeToKB(4L);
+		FilterPlan plan = FilterPlan.compile(filters);
+
+		assertFalse(plan.accepts(file("small.bin", 2 * 1024 - 1)));
+		assertTrue(plan.accepts(file("low.bin", 2 * 1024)));
+		assertTrue(plan.accepts(file("high.bin", 5 * 1024 - 1)));
+		assertFalse(plan.accepts(file("large.bin", 5 * 1024)));
+	}
+
+	@Test
+	void dateRangeUsesModificationTime() throws IOException {
+		LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+		LocalDateTime to = LocalDateTime.of(2024, 12, 31, 23, 59);
+		FileFilters filters = new FileFilters();
+		filters.setDateFilterBaseAttribute("Modification");
+		filters.setFileAgeSegmentationType("DATE_RANGE");
+		filters.setAbsoluteDateRangeFrom(from);
+		filters.setAbsoluteDateRangeTo(to);
+		FilterPlan plan = FilterPlan.compile(filters);
+
+		assertTrue(plan.accepts(modifiedAt("from.txt", from)));
+		assertTrue(plan.accepts(modifiedAt("to.txt", to)));
+		assertFalse(plan.accepts(modifiedAt("before.txt", from.minusSeconds(1))));
+		assertFalse(plan.accepts(modifiedAt("after.txt", to.plusSeconds(1))));
+	}
+
+	@Test
+	void fileAgeInDays() throws IOException {
+		LocalDateTime now = LocalDateTime.now();
+		FileFilters filters = new FileFilters();
+		filters.setDateFilterBaseAttribute("modification");
+		filters.setFileAgeSegmentationType("FILE_AGE");
+		filters.setFileAgeDaysFrom(2L);
+		filters.setFileAgeDaysTo(5L);
+		FilterPlan plan = FilterPlan.compile(filters);
+
+		assertFalse(plan.accepts(modifiedAt("new.txt", now.minusDays(1))));
+		assertTrue(plan.accepts(modifiedAt("two-days.txt", now.minusDays(2).minusMinutes(1))));
+		assertTrue(plan.accepts(modifiedAt("five-days.txt", now.minusDays(5).minusHours(12))));
+		assertFalse(plan.accepts(modifiedAt("old.txt", now.minusDays(7))));
+	}
+
+	@Test
+	void unknownDateAttributeSkipsDateFilter() throws IOException {
+		FileFilters filters = new FileFilters();
+		filters.setDateFilterBaseAttribute("access");
+		filters.setFileAgeSegmentationType("FILE_AGE");
+		filters.setFileAgeDaysFrom(100L);
+		FilterPlan plan = FilterPlan.compile(filters);
+
+		assertTrue(plan.accepts(modifiedAt("new.txt", LocalDateTime.now())));
+	}
+
+	@Test
+	void ownerFiltersMatchIgnoringCase() throws IOException {
+		File file = file("owned.txt", 10);
+		String owner = Files.getOwner(file.toPath()).getName();
+
+		FileFilters include = new FileFilters();
+		include.setIncludeFileOwner(List.of(owner.toUpperCase()));
+		FilterPlan includePlan = FilterPlan.compile(include);
+		assertTrue(includePlan.needsOwner());
+		assertTrue(includePlan.accepts(file));
+
+		FileFilters exclude = new FileFilters();
+		exclude.setExcludeFileOwner(List.of(owner));
+		assertFalse(FilterPlan.compile(exclude).accepts(file));
+	}
+
+	private File file(String relativePath, int size) throws IOException {
+		Path path = dir.resolve(relativePath);
+		Files.createDirectories(path.getParent());
+		Files.write(path, new byte[size]);
+		return path.toFile();
+	}
+
+	private File directory(String relativePath) throws IOException {
+		return Files.createDirectories(dir.resolve(relativePath)).toFile();
+	}
+
+	private File modifiedAt(String name, LocalDateTime modified) throws IOException {
+		File file = file(name, 10);
+		Files.setLastModifiedTime(file.toPath(),
+				FileTime.from(modified.atZone(ZoneId.systemDefault()).toInstant()));
+		return file;
+	}
+
+	private static FileNameFilterCriteria nameCriteria(String criteria1, String criteria2, String value) {
+		return new FileNameFilterCriteria("FILE_NAME", value, criteria1, criteria2);
+	}
+
+	private static FolderPathFilterCriteria folderCriteria(String criteria1, String criteria2, String value) {
+		return new FolderPathFilterCriteria("FOLDER_PATH", value, criteria1, criteria2);
+	}
+}
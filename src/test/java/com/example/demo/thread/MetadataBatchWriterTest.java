@@ -0,0 +1,271 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+
+import com.example.demo.entity.FileMetaData;
+
+class MetadataBatchWriterTest {
+
+	private static final long NO_TIMED_FLUSH = 60_000;
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+	private final List<String> singleRows = new CopyOnWriteArrayList<>();
+
+	@Test
+	void rowsAreWrittenInBatchesAndCloseFlushesTheRest() {
+		recordBatches();
+		MetadataBatchWriter writer = new MetadataBatchWriter(jdbcTemplate, 3, NO_TIMED_FLUSH, 10, "test");
+		for (int i = 1; i <= 7; i++) {
+			writer.add(row("f" + i));
+		}
+		writer.close();
+
+		assertEquals(List.of(List.of("f1", "f2", "f3"), List.of("f4", "f5", "f6"), List.of("f7")), batches);
+		assertEquals(0, writer.getFailedRowCount());
+		assertEquals(0, writer.getQueuedCount());
+	}
+
+	@Test
+	void partialBatchIsFlushedAfterInterval() {
+		recordBatches();
+		MetadataBatchWriter writer = new MetadataBatchWriter(jdbcTemplate, 100, 50, 100, "test");
+		writer.add(row("f1"));
+		writer.add(row("f2"));
+
+		// No further row and no close(): only the flush interval can write these
+		verify(jdbcTemplate, timeout(5_000)).batchUpdate(anyString(), anyCollection(), anyInt(),
+				any(ParameterizedPreparedStatementSetter.class));
+		writer.close();
+
+		assertEquals(List.of(List.of("f1", "f2")), batches);
+	}
+
+	@Test
+	void failedBatchIsRetriedRowByRow() {
+		when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(),
+				any(ParameterizedPreparedStatementSetter.class)))
+				.thenThrow(new DataIntegrityViolationException("duplicate key"));
+		recordSingleRows("bad");
+		MetadataBatchWriter writer = new MetadataBatchWriter(jdbcTemplate, 10, NO_TIMED_FLUSH, 10, "test");
+		writer.add(row("f1"));
+		writer.add(row("bad"));
+		writer.add(row("f3"));
+		writer.close();
+
+		assertEquals(List.of("f1", "f3"), singleRows);
+		assertEquals(1, writer.getFailedRowCount());
+	}
+
+	@Test
+	void rowsCommittedBeforeTheBatchBrokeOffCountAsSaved() {
+		when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(),
+				any(ParameterizedPreparedStatementSetter.class)))
+				.thenThrow(new DataIntegrityViolationException("bad row"));
+		// f1 was committed by the partial batch, "bad" is the row that broke it
+		doAnswer(invocation -> {
+			PreparedStatement ps = mock(PreparedStatement.class);
+			((PreparedStatementSetter) invocation.getArgument(1)).setValues(ps);
+			String fileId = boundFileId(ps);
+			if ("f1".equals(fileId)) {
+				throw new DuplicateKeyException("Duplicate entry 'f1' for key 'PRIMARY'");
+			}
+			if ("bad".equals(fileId)) {
+				throw new DataIntegrityViolationException("bad row");
+			}
+			singleRows.add(fileId);
+			return 1;
+		}).when(jdbcTemplate).update(anyString(), any(PreparedStatementSetter.class));
+		MetadataBatchWriter writer = new MetadataBatchWriter(jdbcTemplate, 10, NO_TIMED_FLUSH, 10, "test");
+		writer.add(row("f1"));
+		writer.add(row("bad"));
+		writer.add(row("f3"));
+		writer.close();
+
+		assertEquals(List.of("f3"), singleRows);
+		assertEquals(1, writer.getFailedRowCount());
+	}
+
+	@Test
+	void unexpectedBatchFailureCountsTheWholeBatch() {
+		when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(),
+				any(ParameterizedPreparedStatementSetter.class))).thenThrow(new IllegalStateException("boom"));
+		MetadataBatchWriter writer = new MetadataBatchWriter(jdbcTemplate, 10, NO_TIMED_FLUSH, 10, "test");
+		writer.add(row("f1"));
+		writer.add(row("f2"));
+		writer.close();
+
+		verify(jdbcTemplate, never()).update(anyString(), any(PreparedStatementSetter.class));
+		assertEquals(2, writer.getFailedRowCount());
+	}
+
+	@Test
+	void fullQueueHoldsBackTheCopyUntilTheWriterCatchesUp() throws InterruptedException {
+		CountDownLatch databaseSlow = new CountDownLatch(1);
+		doAnswer(invocation -> {
+			databaseSlow.await();
+			List<String> fileIds = new ArrayList<>();
+			for (Object meta : (Collection<?>) invocation.getArgument(1)) {
+				fileIds.add(((FileMetaData) meta).getFileId());
+			}
+			batches.add(fileIds);
+			return new int[0][];
+		}).when(jdbcTemplate).batchUpdate(anyString(), anyCollection(), anyInt(),
+				any(ParameterizedPreparedStatementSetter.class));
+		MetadataBatchWriter writer = new MetadataBatchWriter(jdbcTemplate, 1, NO_TIMED_FLUSH, 1, "test");
+		writer.add(row("f1")); // Taken by the writer, which is stuck in the database
+		verify(jdbcTemplate, timeout(5_000)).batchUpdate(anyString(), anyCollection(), anyInt(),
+				any(ParameterizedPreparedStatementSetter.class));
+		writer.add(row("f2")); // Fills the queue
+
+		CountDownLatch thirdAdded = new CountDownLatch(1);
+		Thread copyWorker = new Thread(() -> {
+			writer.add(row("f3"));
+			thirdAdded.countDown();
+		});
+		copyWorker.start();
+
+		assertFalse(thirdAdded.await(300, TimeUnit.MILLISECONDS)); // Back-pressure: the copy waits
+		databaseSlow.countDown();
+		assertTrue(thirdAdded.await(5, TimeUnit.SECONDS));
+		writer.close();
+
+		// close() returned only after every queued row reached the database
+		assertEquals(List.of(List.of("f1"), List.of("f2"), List.of("f3")), batches);
+		assertEquals(0, writer.getQueuedCount());
+	}
+
+	@Test
+	void rowAddedAfterCloseIsWrittenDirectly() {
+		recordBatches();
+		MetadataBatchWriter writer = new MetadataBatchWriter(jdbcTemplate, 10, NO_TIMED_FLUSH, 10, "test");
+		writer.close();
+		writer.add(row("late"));
+
+		assertEquals(List.of(List.of("late")), batches);
+	}
+
+	@Test
+	void rowValuesAreBoundInColumnOrder() throws SQLException {
+		List<ParameterizedPreparedStatementSetter<FileMetaData>> setters = new ArrayList<>();
+		doAnswer(invocation -> {
+			setters.add(invocation.getArgument(3));
+			return new int[0][];
+		}).when(jdbcTemplate).batchUpdate(anyString(), anyCollection(), anyInt(),
+				any(ParameterizedPreparedStatementSetter.class));
+		MetadataBatchWriter writer = new MetadataBatchWriter(jdbcTemplate, 10, NO_TIMED_FLUSH, 10, "test");
+		FileMetaData meta = row("10042.001");
+		meta.setRunId(new BigDecimal("10042"));
+		meta.setSize(2048L);
+		meta.setContentRef("ab/cdef");
+		writer.add(meta);
+		writer.close();
+
+		PreparedStatement ps = mock(PreparedStatement.class);
+		setters.get(0).setValues(ps, meta);
+		verify(ps).setString(1, "10042.001");
+		verify(ps).setBigDecimal(3, new BigDecimal("10042"));
+		verify(ps).setNull(6, Types.TIMESTAMP); // No creation date
+		verify(ps).setLong(7, 2048L);
+		verify(ps).setNull(22, Types.BIGINT); // No chunk size
+		verify(ps).setString(23, "ab/cdef");
+	}
+
+	@Test
+	void fileTimesAreBoundAsUtcWallClockMicroseconds() throws SQLException {
+		List<ParameterizedPreparedStatementSetter<FileMetaData>> setters = new ArrayList<>();
+		doAnswer(invocation -> {
+			setters.add(invocation.getArgument(3));
+			return new int[0][];
+		}).when(jdbcTemplate).batchUpdate(anyString(), anyCollection(), anyInt(),
+				any(ParameterizedPreparedStatementSetter.class));
+		MetadataBatchWriter writer = new MetadataBatchWriter(jdbcTemplate, 10, NO_TIMED_FLUSH, 10, "test");
+		FileMetaData meta = row("10042.001");
+		meta.setCreationDate(Instant.parse("2024-03-01T10:15:30.123456789Z"));
+		meta.setModificationDate(Instant.parse("2024-03-02T23:59:59.000000999Z"));
+		meta.setCreatedAt(LocalDateTime.of(2024, 3, 3, 8, 0));
+		writer.add(meta);
+		writer.close();
+
+		PreparedStatement ps = mock(PreparedStatement.class);
+		setters.get(0).setValues(ps, meta);
+		// Typed values, no formatted strings, and no shift into the JVM's time zone
+		verify(ps).setObject(2, LocalDateTime.of(2024, 3, 3, 8, 0));
+		verify(ps).setObject(6, LocalDateTime.of(2024, 3, 1, 10, 15, 30, 123_456_000));
+		verify(ps).setObject(10, LocalDateTime.of(2024, 3, 2, 23, 59, 59));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void recordBatches() {
+		doAnswer(invocation -> {
+			List<String> fileIds = new ArrayList<>();
+			for (FileMetaData meta : (Collection<FileMetaData>) invocation.getArgument(1)) {
+				fileIds.add(meta.getFileId());
+			}
+			batches.add(fileIds);
+			return new int[0][];
+		}).when(jdbcTemplate).batchUpdate(anyString(), anyCollection(), anyInt(),
+				any(ParameterizedPreparedStatementSetter.class));
+	}
+
+	/** Records the rows inserted on their own, failing the one with {@code failingFileId}. */
+	private void recordSingleRows(String failingFileId) {
+		doAnswer(invocation -> {
+			PreparedStatement ps = mock(PreparedStatement.class);
+			((PreparedStatementSetter) invocation.getArgument(1)).setValues(ps);
+			String fileId = boundFileId(ps);
+			if (failingFileId.equals(fileId)) {
+				throw new DataIntegrityViolationException("bad row " + fileId);
+			}
+			singleRows.add(fileId);
+			return 1;
+		}).when(jdbcTemplate).update(anyString(), any(PreparedStatementSetter.class));
+	}
+
+	private static String boundFileId(PreparedStatement ps) throws SQLException {
+		ArgumentCaptor<String> fileId = ArgumentCaptor.forClass(String.class);
+		verify(ps).setString(eq(1), fileId.capture());
+		return fileId.getValue();
+	}
+
+	private static FileMetaData row(String fileId) {
+		FileMetaData meta = new FileMetaData();
+		meta.setFileId(fileId);
+		meta.setFileName(fileId + ".txt");
+		return meta;
+	}
+}
@@ -0,0 +1,143 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class PipelineStageTest {
+
+	private final ExecutorService sharedExecutor = Executors.newFixedThreadPool(4);
+
+	@AfterEach
+	void shutdown() {
+		sharedExecutor.shutdownNow();
+	}
+
+	@Test
+	void fullQueueHoldsBackTheProducer() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch firstTaken = new CountDownLatch(1);
+		PipelineStage<Integer> stage = new PipelineStage<>("test", 1, 1, item -> {
+			firstTaken.countDown();
+			await(release);
+		});
+		stage.submit(1); // Taken by the only worker, which waits
+		assertTrue(firstTaken.await(5, TimeUnit.SECONDS));
+		stage.submit(2); // Fills the queue
+
+		CountDownLatch thirdSubmitted = new CountDownLatch(1);
+		Thread producer = new Thread(() -> {
+			stage.submit(3);
+			thirdSubmitted.countDown();
+		});
+		producer.start();
+
+		assertFalse(thirdSubmitted.await(300, TimeUnit.MILLISECONDS));
+		assertEquals(1, stage.getQueueDepth());
+		release.countDown();
+		assertTrue(thirdSubmitted.await(5, TimeUnit.SECONDS));
+		stage.close();
+		assertEquals(3, stage.getCompletedCount());
+	}
+
+	@Test
+	void closeHandlesEveryItemWithOwnThreads() {
+		Set<Integer> handled = ConcurrentHashMap.newKeySet();
+		PipelineStage<Integer> stage = new PipelineStage<>("test", 3, 5, slowly(handled));
+
+		assertClosesAfterEveryItem(stage, handled);
+	}
+
+	@Test
+	void closeHandlesEveryItemOnASharedExecutor() {
+		Set<Integer> handled = ConcurrentHashMap.newKeySet();
+		PipelineStage<Integer> stage = new PipelineStage<>("test", sharedExecutor, 3, 5, slowly(handled));
+
+		assertClosesAfterEveryItem(stage, handled);
+	}
+
+	@Test
+	void interruptedCloseCountsDroppedItemsWithOwnThreads() {
+		CountDownLatch release = new CountDownLatch(1);
+		PipelineStage<Integer> stage = new PipelineStage<>("test", 1, 20, item -> await(release));
+
+		assertInterruptedCloseAccountsForEveryItem(stage, null);
+	}
+
+	@Test
+	void interruptedCloseCountsDroppedItemsOnASharedExecutor() {
+		CountDownLatch release = new CountDownLatch(1);
+		PipelineStage<Integer> stage = new PipelineStage<>("test", sharedExecutor, 1, 20, item -> await(release));
+
+		// Shared workers are not interrupted; close() waits for the one in progress
+		assertInterruptedCloseAccountsForEveryItem(stage, release);
+	}
+
+	private static void assertClosesAfterEveryItem(PipelineStage<Integer> stage, Set<Integer> handled) {
+		for (int i = 0; i < 100; i++) {
+			stage.submit(i);
+		}
+		stage.close();
+
+		assertEquals(100, handled.size());
+		assertEquals(100, stage.getSubmittedCount());
+		assertEquals(100, stage.getCompletedCount());
+		assertEquals(0, stage.getDroppedCount());
+		assertEquals(0, stage.getQueueDepth());
+	}
+
+	private static void assertInterruptedCloseAccountsForEveryItem(PipelineStage<Integer> stage,
+			CountDownLatch releaseLater) {
+		for (int i = 0; i < 10; i++) {
+			stage.submit(i);
+		}
+		if (releaseLater != null) {
+			Thread releaser = new Thread(() -> {
+				sleep(200);
+				releaseLater.countDown();
+			});
+			releaser.start();
+		}
+		Thread.currentThread().interrupt();
+		stage.close();
+
+		assertTrue(Thread.interrupted()); // close() kept the interrupt
+		assertTrue(stage.getDroppedCount() > 0);
+		assertEquals(stage.getSubmittedCount(), stage.getCompletedCount() + stage.getDroppedCount());
+		assertEquals(10, stage.getSubmittedCount());
+	}
+
+	private static Consumer<Integer> slowly(Set<Integer> handled) {
+		return item -> {
+			sleep(1);
+			handled.add(item);
+		};
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class PooledGzipOutputStreamTest {
+
+	private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+	private final CRC32 crc = new CRC32();
+	private final byte[] buffer = new byte[512];
+
+	@AfterEach
+	void endDeflater() {
+		deflater.end();
+	}
+
+	@Test
+	void outputIsReadableByGzipInputStream() throws IOException {
+		byte[] content = "The quick brown fox jumps over the lazy dog\n".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+		assertArrayEquals(content, gunzip(gzip(content)));
+	}
+
+	@Test
+	void deflaterAndChecksumAreReusedAcrossFiles() throws IOException {
+		byte[] first = randomBytes(100_000, 1);
+		byte[] second = "second file".getBytes(StandardCharsets.UTF_8);
+		byte[] third = new byte[0];
+
+		assertArrayEquals(first, gunzip(gzip(first)));
+		assertArrayEquals(second, gunzip(gzip(second)));
+		assertArrayEquals(third, gunzip(gzip(third)));
+	}
+
+	@Test
+	void closeIsIdempotent() throws IOException {
+		byte[] content = randomBytes(4096, 2);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		PooledGzipOutputStream gzip = newStream(compressed);
+		gzip.write(content);
+		gzip.close();
+		gzip.close(); // Must not append a second trailer
+
+		assertArrayEquals(content, gunzip(compressed.toByteArray()));
+	}
+
+	/** Compresses one file the way a pooled copy context does: reset, write, close. */
+	private byte[] gzip(byte[] content) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (PooledGzipOutputStream gzip = newStream(compressed)) {
+			gzip.write(content, 0, content.length);
+		}
+		return compressed.toByteArray();
+	}
+
+	private PooledGzipOutputStream newStream(ByteArrayOutputStream target) throws IOException {
+		deflater.reset();
+		crc.reset();
+		return new PooledGzipOutputStream(target, deflater, crc, buffer);
+	}
+
+	private static byte[] gunzip(byte[] compressed) throws IOException {
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			return in.readAllBytes();
+		}
+	}
+
+	private static byte[] randomBytes(int length, long seed) {
+		byte[] bytes = new byte[length];
+		new Random(seed).nextBytes(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,70 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class RunContextTest {
+
+	private static final BigDecimal RUN_ID = new BigDecimal("10042");
+
+	@Test
+	void fileIdsArePaddedToThreeDigits() {
+		RunContext runContext = newRunContext();
+
+		assertEquals("10042.001", runContext.nextFileId());
+		for (int i = 2; i < 10; i++) {
+			runContext.nextFileId();
+		}
+		assertEquals("10042.010", runContext.nextFileId());
+	}
+
+	@Test
+	void fileIdsGrowPastThreeDigits() {
+		RunContext runContext = newRunContext();
+		String fileId = null;
+		for (int i = 0; i < 1000; i++) {
+			fileId = runContext.nextFileId();
+		}
+
+		assertEquals("10042.1000", fileId);
+		assertEquals("10042.1001", runContext.nextFileId());
+	}
+
+	@Test
+	void fileIdsMatchLegacyFormat() {
+		RunContext runContext = newRunContext();
+		for (int count = 1; count <= 12_000; count++) {
+			assertEquals(RUN_ID + "." + String.format("%03d", count), runContext.nextFileId());
+		}
+	}
+
+	@Test
+	void fileIdsAreUniqueAcrossThreads() throws InterruptedException {
+		RunContext runContext = newRunContext();
+		Set<String> fileIds = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		for (int i = 0; i < 8; i++) {
+			executor.execute(() -> {
+				for (int j = 0; j < 5_000; j++) {
+					fileIds.add(runContext.nextFileId());
+				}
+			});
+		}
+		executor.shutdown();
+		executor.awaitTermination(30, TimeUnit.SECONDS);
+
+		assertEquals(40_000, fileIds.size());
+	}
+
+	private static RunContext newRunContext() {
+		return new RunContext(RUN_ID, "copy", null, null, null, null, null, null, null, null, null);
+	}
+}
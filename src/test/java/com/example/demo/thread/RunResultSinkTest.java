@@ -0,0 +1,86 @@
+package com.example.demo.thread;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class RunResultSinkTest {
+
+	@Test
+	void sinksOfConcurrentRunsDoNotShareResults() {
+		RunResultSink first = new RunResultSink(true);
+		RunResultSink second = new RunResultSink(true);
+		first.add(result("a.txt", "Y"));
+		second.add(result("b.txt", "N"));
+
+		assertEquals(List.of(result("a.txt", "Y")), first.getResults());
+		assertEquals(List.of(result("b.txt", "N")), second.getResults());
+		assertEquals(1L, first.getSummary().get("archivedFiles"));
+		assertEquals(0L, first.getSummary().get("failedFiles"));
+	}
+
+	@Test
+	void concurrentAddsAreAllCounted() throws InterruptedException {
+		RunResultSink sink = new RunResultSink(true);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		for (int i = 0; i < 10_000; i++) {
+			String isArchived = i % 4 == 0 ? "N" : "Y";
+			executor.execute(() -> sink.add(result("f.txt", isArchived)));
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+		assertEquals(10_000, sink.getResults().size());
+		assertEquals(10_000L, sink.getSummary().get("totalFiles"));
+		assertEquals(7_500L, sink.getSummary().get("archivedFiles"));
+		assertEquals(2_500L, sink.getSummary().get("failedFiles"));
+	}
+
+	@Test
+	void unretainedSinkOnlyCounts() {
+		RunResultSink sink = new RunResultSink(false);
+		sink.add(result("a.txt", "Y"));
+		sink.addUnchanged();
+
+		assertTrue(sink.getResults().isEmpty());
+		assertEquals(1L, sink.getSummary().get("totalFiles"));
+		assertEquals(1L, sink.getSummary().get("unchangedFiles"));
+		assertFalse(sink.getSummary().containsKey("resultsNotRetained"));
+	}
+
+	@Test
+	void listenerSeesEveryResult() {
+		List<Map<String, Object>> streamed = new CopyOnWriteArrayList<>();
+		RunResultSink sink = new RunResultSink(false, streamed::add);
+		sink.add(result("a.txt", "Y"));
+		sink.add(result("b.txt", "Y"));
+
+		assertEquals(2, streamed.size());
+		assertTrue(sink.getResults().isEmpty());
+	}
+
+	@Test
+	void lossesAppearInTheSummaryOnlyWhenThereAreAny() {
+		RunResultSink sink = new RunResultSink(false);
+		assertFalse(sink.getSummary().containsKey("droppedFiles"));
+		assertFalse(sink.getSummary().containsKey("metadataRowsNotSaved"));
+
+		sink.addDroppedFiles(3);
+		sink.addUnsavedMetadataRows(2);
+		assertEquals(3L, sink.getSummary().get("droppedFiles"));
+		assertEquals(2L, sink.getSummary().get("metadataRowsNotSaved"));
+	}
+
+	private static Map<String, Object> result(String fileName, String isArchived) {
+		return Map.of("fileName", fileName, "isArchived", isArchived);
+	}
+}
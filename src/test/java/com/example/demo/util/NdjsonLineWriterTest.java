@@ -0,0 +1,103 @@
+package com.example.demo.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class NdjsonLineWriterTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void queuedLinesAreWrittenInOrderByClose() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		NdjsonLineWriter writer = new NdjsonLineWriter(out, objectMapper, 100);
+		for (int i = 0; i < 50; i++) {
+			writer.write(Map.of("n", i));
+		}
+		writer.close();
+
+		List<String> lines = lines(out);
+		assertEquals(50, lines.size());
+		assertEquals("{\"n\":0}", lines.get(0));
+		assertEquals("{\"n\":49}", lines.get(49));
+		assertEquals(0, writer.getDroppedLineCount());
+	}
+
+	@Test
+	void slowClientNeverBlocksTheWriters() throws InterruptedException {
+		CountDownLatch clientReady = new CountDownLatch(1);
+		ByteArrayOutputStream received = new ByteArrayOutputStream();
+		OutputStream slowClient = new FilterOutputStream(received) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				try {
+					clientReady.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				out.write(b, off, len);
+			}
+		};
+		NdjsonLineWriter writer = new NdjsonLineWriter(slowClient, objectMapper, 10);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 1000; i++) {
+			writer.write(Map.of("n", i));
+		}
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		clientReady.countDown();
+		writer.close();
+
+		assertTrue(elapsedMillis < 5_000, "write() waited for the client: " + elapsedMillis + " ms");
+		// At most the queue plus the line the writer thread holds got through
+		long streamed = lines(received).size();
+		assertTrue(streamed <= 11, "streamed " + streamed);
+		assertEquals(1000, streamed + writer.getDroppedLineCount());
+	}
+
+	@Test
+	void brokenClientDoesNotFailTheRun() {
+		OutputStream gone = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("Broken pipe");
+			}
+		};
+		NdjsonLineWriter writer = new NdjsonLineWriter(gone, objectMapper, 10);
+		writer.write(Map.of("n", 1));
+		writer.close();
+		writer.write(Map.of("summary", "done"));
+
+		assertEquals(0, writer.getDroppedLineCount());
+	}
+
+	@Test
+	void linesWrittenAfterCloseGoStraightToTheStream() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		NdjsonLineWriter writer = new NdjsonLineWriter(out, objectMapper, 10);
+		writer.write(Map.of("n", 1));
+		writer.close();
+		writer.write(Map.of("summary", "done"));
+
+		assertEquals(List.of("{\"n\":1}", "{\"summary\":\"done\"}"), lines(out));
+	}
+
+	private static List<String> lines(ByteArrayOutputStream out) {
+		String text = out.toString(StandardCharsets.UTF_8);
+		return text.isEmpty() ? List.of() : List.of(text.split("\n"));
+	}
+}